@@ -70,8 +70,11 @@ public class Claj {
     this.provider = provider;
     this.proxies = proxies;
     this.pingers = pingers;
-    // Automatically disposes workers when the application closes, if defined
+    // Automatically disposes workers when the application closes, if defined.
+    // And flushes coalesced packets at the end of each tick.
     Core.app.addListener(new ApplicationListener() {
+      @Override
+      public void update() { if (provider.coalesceWrites()) Claj.this.flush(); }
       @Override
       public void dispose() { Claj.this.dispose(); }
     });
@@ -89,6 +92,11 @@ public class Claj {
     proxies.stop();
   }
 
+  /** Writes packets coalesced by the proxies. */
+  public void flush() {
+    proxies.flush();
+  }
+
   public void cancelPingers() {
     pingers.cancel();
   }
@@ -108,6 +116,21 @@ public class Claj {
     proxies.createRoom(host, port, created, closed, failed);
   }
 
+  /**
+   * Creates the room on the best relay of the {@link ClajPingerManager#ranking ranking}. <br>
+   * The cached ranking is used, so relays are only probed if it was never refreshed.
+   */
+  public void createRoomOnBest(Cons<ClajLink> created, Cons<CloseReason> closed, Cons<Throwable> failed) {
+    pingers.ranking.best(relay -> {
+      if (relay != null) createRoom(relay.host, relay.port, created, closed, failed);
+      else if (failed != null) failed.get(new IllegalStateException("No reachable relay"));
+    });
+  }
+
+  public ClajRelayRanking ranking() {
+    return pingers.ranking;
+  }
+
   public void joinRoom(ClajLink link, Runnable success, Cons<RejectReason> reject, Cons<Exception> failed) {
     pingers.joinRoom(link, success, reject, failed);
   }
@@ -124,4 +147,13 @@ public class Claj {
   public <T> void serverRooms(String host, int port, Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
     pingers.serverRooms(host, port, rooms, failed);
   }
+
+  public <T> ClajRoomSubscription<T> subscribeRooms(String host, int port, Cons<ClajRoomSubscription<T>> changed,
+                                                    Cons<Exception> failed) {
+    return pingers.subscribeRooms(host, port, changed, failed);
+  }
+
+  public void unsubscribeRooms() {
+    pingers.unsubscribeRooms();
+  }
 }
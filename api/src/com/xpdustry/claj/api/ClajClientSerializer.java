@@ -31,6 +31,7 @@ import arc.util.io.ByteBufferOutput;
 import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.net.FrameworkSerializer;
 import com.xpdustry.claj.common.packets.Packet;
+import com.xpdustry.claj.common.packets.PacketPool;
 
 
 public class ClajClientSerializer implements NetSerializer, FrameworkSerializer {
@@ -69,6 +70,7 @@ public class ClajClientSerializer implements NetSerializer, FrameworkSerializer
       writeFramework(buffer, framework);
 
     } else if (object instanceof Packet packet) {
+      PacketPool.check(packet);
       buffer.put(ClajNet.id).put(ClajNet.getId(packet));
       ByteBufferOutput writeo = write.get();
       writeo.buffer = buffer;
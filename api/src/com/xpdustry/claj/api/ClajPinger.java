@@ -20,6 +20,7 @@
 package com.xpdustry.claj.api;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.Selector;
 
@@ -32,8 +33,11 @@ import arc.struct.Seq;
 import arc.util.Reflect;
 import arc.util.io.ByteBufferInput;
 
+import com.xpdustry.claj.api.net.HostResolver;
 import com.xpdustry.claj.common.ClajNet;
+import com.xpdustry.claj.common.ClajPackets.Disconnect;
 import com.xpdustry.claj.common.net.ClientReceiver;
+import com.xpdustry.claj.common.net.stream.StreamBuilder;
 import com.xpdustry.claj.common.packets.*;
 import com.xpdustry.claj.common.status.*;
 
@@ -65,9 +69,14 @@ public class ClajPinger extends Client {
   protected Cons<Exception> pingFailed;
   protected volatile boolean pinging;
 
-  protected Cons<Seq<ClajRoom<?>>> listInfo;
+  protected Cons<Seq<ClajRoom<?>>> listInfo, listBatch;
   protected Cons<Exception> listFailed;
   protected volatile boolean listing;
+  /** Progressive decoding of a streamed room list. */
+  protected RoomListPacket.Reader listReader;
+  protected int listStream = -1;
+  /** Rooms already given in batches, reused when the streamed list is complete. */
+  protected final Seq<ClajRoom<?>> streamedRooms = new Seq<>();
 
   protected Cons<ByteBuffer> joinSuccess;
   protected Cons<RejectReason> joinDenied;
@@ -81,6 +90,11 @@ public class ClajPinger extends Client {
   protected Cons<Exception> infoFailed;
   protected volatile boolean infoing;
 
+  protected ClajRoomSubscription<?> subscription;
+  /** Room list updates received before the initial list. */
+  protected final Seq<Runnable> pendingUpdates = new Seq<>();
+  protected volatile boolean subscribing, subscribed;
+
   public ClajPinger(ClajProvider provider) {
     super(8192, 8192, new Serializer());
     // Disable ArcNet timeout, we handle it ourselves
@@ -98,8 +112,16 @@ public class ClajPinger extends Client {
         runJoinDenied(p.reason);
     });
 
+    receiver.handleStreamProgress(this::streamProgress);
     receiver.handle(RoomListPacket.class, p -> {
-      runListInfo(p.size, p.rooms, p.isProtected, p.states);
+      if (subscription != null) runSubscriptionList(p.size, p.rooms, p.isProtected, p.states);
+      else runListInfo(p.size, p.rooms, p.isProtected, p.states);
+    });
+    receiver.handle(RoomListUpdatePacket.class, p -> {
+      if (subscription != null) runSubscriptionUpdate(p.size, p.rooms, p.isProtected, p.states, p.removed);
+    });
+    receiver.handle(Disconnect.class, () -> {
+      if (subscription != null) runSubscriptionFailed(new RuntimeException("Room list subscription lost"));
     });
     receiver.handle(RoomInfoPacket.class, p -> {
       if (p.roomId == requestedRoom)
@@ -108,7 +130,7 @@ public class ClajPinger extends Client {
     receiver.handle(RoomInfoDeniedPacket.class, this::runInfoNotFound);
 
     receiver.handle(ServerInfoPacket.class, p -> {
-      runPingSuccess(p.version);
+      runPingSuccess(p.version, p.load);
     });
   }
 
@@ -176,6 +198,7 @@ public class ClajPinger extends Client {
     if (listing) runListFailed(new RuntimeException("Room listing " + reason));
     if (joining) runJoinFailed(new RuntimeException("Room join " + reason));
     if (infoing) runInfoFailed(new RuntimeException("Room info " + reason));
+    if (subscribing || subscribed) runSubscriptionFailed(new RuntimeException("Room list subscription " + reason));
   }
 
   public boolean isRunning() {
@@ -187,7 +210,7 @@ public class ClajPinger extends Client {
   }
 
   public synchronized boolean isWorking() {
-    return pinging || listing || joining || infoing;
+    return pinging || listing || joining || infoing || subscribing || subscribed;
   }
 
   public void setCancelState(boolean cancel) {
@@ -220,10 +243,10 @@ public class ClajPinger extends Client {
     pinging = false;
   }
 
-  protected void runPingSuccess(int version) {
+  protected void runPingSuccess(int version, ServerLoad load) {
     if (pingSuccess != null) {
       int ping = (int)(System.currentTimeMillis() - time);
-      postTask(pingSuccess, new ServerState(connectHost, connectPort, version, ping));
+      postTask(pingSuccess, new ServerState(connectHost, connectPort, version, ping, load));
     }
     resetPingState(null, null);
     close();
@@ -236,7 +259,9 @@ public class ClajPinger extends Client {
   }
 
   @SuppressWarnings({"unchecked", "rawtypes"}) // meh...
-  protected synchronized <T> void resetListState(Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
+  protected synchronized <T> void resetListState(Cons<Seq<ClajRoom<T>>> batch, Cons<Seq<ClajRoom<T>>> rooms,
+                                                 Cons<Exception> failed) {
+    listBatch = (Cons)batch;
     listInfo = (Cons)rooms;
     listFailed = failed;
     setRequestTimeout(0);
@@ -245,27 +270,75 @@ public class ClajPinger extends Client {
 
   protected void runListInfo(int size, long[] rooms, boolean[] isProtected, ByteBuffer[] states) {
     // Avoid creating useless objects if the callback is not defined.
-    if (listInfo != null) {
-      Seq<ClajRoom<?>> roomList = new Seq<>(size);
-      ClajType type = provider.getType();
-      for (int i=0; i<size; i++) {
-        if (rooms[i] == ClajProxy.UNCREATED_ROOM) continue; // ignore invalid rooms
-        roomList.add(new ClajRoom<>(
-          rooms[i], true, isProtected[i],
-          provider.readRoomState(rooms[i], type, states[i]),
-          new ClajLink(connectHost, connectPort, rooms[i]),
-          type
-        ));
-      }
-      postTask(listInfo, roomList);
-    }
-    resetListState(null, null);
+    if (listInfo != null) postTask(listInfo, roomList(size, rooms, isProtected, states));
+    resetListState(null, null, null);
     close();
   }
 
+  /** @return the rooms given in batches if the list was streamed, else makes the list. */
+  protected Seq<ClajRoom<?>> roomList(int size, long[] rooms, boolean[] isProtected, ByteBuffer[] states) {
+    Seq<ClajRoom<?>> list = takeStreamedRooms(size);
+    return list != null ? list : makeRoomList(size, rooms, isProtected, states);
+  }
+
+  protected Seq<ClajRoom<?>> makeRoomList(int size, long[] rooms, boolean[] isProtected, ByteBuffer[] states) {
+    return makeRoomList(0, size, rooms, isProtected, states);
+  }
+
+  protected Seq<ClajRoom<?>> makeRoomList(int from, int to, long[] rooms, boolean[] isProtected,
+                                          ByteBuffer[] states) {
+    Seq<ClajRoom<?>> roomList = new Seq<>(to - from);
+    ClajType type = provider.getType();
+    for (int i=from; i<to; i++) {
+      if (rooms[i] == ClajProxy.UNCREATED_ROOM) continue; // ignore invalid rooms
+      // States are decoded on first access
+      roomList.add(new ClajRoom<>(
+        rooms[i], true, isProtected[i],
+        states[i], provider,
+        new ClajLink(connectHost, connectPort, rooms[i]),
+        type
+      ));
+    }
+    return roomList;
+  }
+
+  /** Decodes the rooms of a streamed list as chunks are received, and gives them in batches. */
+  protected void streamProgress(StreamBuilder builder) {
+    if (builder.type != ClajNet.getId(RoomListPacket.class) || !listing && !subscribing) return;
+    if (builder.id != listStream || listReader == null) {
+      listStream = builder.id;
+      listReader = new RoomListPacket.Reader();
+      streamedRooms.clear();
+    }
+    // The server is responding, so don't time out a slow transfer
+    setRequestTimeout(listTimeout);
+
+    int count = listReader.read(builder.received());
+    if (count == 0) return;
+    RoomListPacket list = listReader.list;
+    Seq<ClajRoom<?>> batch = makeRoomList(listReader.decoded - count, listReader.decoded, list.rooms,
+                                          list.isProtected, list.states);
+    streamedRooms.addAll(batch);
+
+    ClajRoomSubscription<?> sub = subscription;
+    if (sub != null) postTask(() -> sub.partial(batch));
+    else if (listBatch != null) postTask(listBatch, batch);
+  }
+
+  /** @return the streamed rooms if the list was complete and has the same {@code size}, else {@code null}. */
+  protected Seq<ClajRoom<?>> takeStreamedRooms(int size) {
+    RoomListPacket.Reader reader = listReader;
+    listReader = null;
+    listStream = -1;
+    Seq<ClajRoom<?>> list = reader != null && reader.isDone() && reader.list.size == size ?
+                            new Seq<>(streamedRooms) : null;
+    streamedRooms.clear();
+    return list;
+  }
+
   protected void runListFailed(Exception e) {
     if (listFailed != null) postTask(listFailed, e);
-    resetListState(null, null);
+    resetListState(null, null, null);
     close();
   }
 
@@ -312,7 +385,7 @@ public class ClajPinger extends Client {
     if (infoSuccess != null) {
       ClajRoom<?> room = new ClajRoom<>(
         roomId, true, isProtected,
-        provider.readRoomState(roomId, type, state),
+        state, provider,
         new ClajLink(connectHost, connectPort, roomId),
         type
       );
@@ -334,6 +407,42 @@ public class ClajPinger extends Client {
     close();
   }
 
+  protected synchronized void resetSubscriptionState(ClajRoomSubscription<?> sub) {
+    subscription = sub;
+    pendingUpdates.clear();
+    setRequestTimeout(0);
+    subscribing = subscribed = false;
+  }
+
+  protected void runSubscriptionList(int size, long[] rooms, boolean[] isProtected, ByteBuffer[] states) {
+    ClajRoomSubscription<?> sub = subscription;
+    Seq<ClajRoom<?>> list = roomList(size, rooms, isProtected, states);
+    // The connection is kept open, so restore the default timeout
+    setRequestTimeout(0);
+    subscribing = false;
+    subscribed = true;
+    postTask(() -> sub.listed(list));
+    pendingUpdates.each(this::postTask);
+    pendingUpdates.clear();
+  }
+
+  protected void runSubscriptionUpdate(int size, long[] rooms, boolean[] isProtected, ByteBuffer[] states,
+                                       long[] removed) {
+    ClajRoomSubscription<?> sub = subscription;
+    Seq<ClajRoom<?>> list = makeRoomList(size, rooms, isProtected, states);
+    Runnable task = () -> sub.updated(list, removed);
+    // The initial list can be received after, if it was chunked
+    if (subscribed) postTask(task);
+    else pendingUpdates.add(task);
+  }
+
+  protected void runSubscriptionFailed(Exception e) {
+    ClajRoomSubscription<?> sub = subscription;
+    if (sub != null) postTask(() -> sub.failed(e));
+    resetSubscriptionState(null);
+    close();
+  }
+
   /**
    * Connect using {@link #connectTimeout} and same {@code port} for TCP and UDP. <br>
    * This also ensures that the client is running before connection, and can be canceled.
@@ -343,8 +452,17 @@ public class ClajPinger extends Client {
     connecting = true;
     connectHost = host;
     connectPort = port;
-    try { connect(connectTimeout, host, port, port); }
-    finally { connecting = false; }
+    try {
+      InetAddress address = HostResolver.global.resolve(host);
+      try { connect(connectTimeout, address, port, port); }
+      catch (IOException e) {
+        // Try the other address family once
+        address = canceling ? null : HostResolver.global.fallback(host, address);
+        if (address == null) throw e;
+        connect(connectTimeout, address, port, port);
+      }
+      HostResolver.global.confirm(host, address);
+    } finally { connecting = false; }
   }
 
   public void pingHost(String host, int port, Cons<ServerState> success, Cons<Exception> failed) {
@@ -365,15 +483,24 @@ public class ClajPinger extends Client {
   }
 
   public <T> void requestRoomList(String host, int port, Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
+    requestRoomList(host, port, null, rooms, failed);
+  }
+
+  /**
+   * @param batch can be {@code null}. If the server streams the list, receives the rooms as soon as they are
+   *              decoded, before the whole list is given to {@code rooms}.
+   */
+  public <T> void requestRoomList(String host, int port, Cons<Seq<ClajRoom<T>>> batch,
+                                  Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
     if (!canceling) {
       try { connect(host, port); }
       catch (Exception e) {
-        resetListState(rooms, failed);
+        resetListState(batch, rooms, failed);
         runListFailed(e);
         return;
       }
     } else close();
-    resetListState(rooms, failed);
+    resetListState(batch, rooms, failed);
     setRequestTimeout(listTimeout);
     listing = true;
     if (canceling) cancel();
@@ -426,6 +553,35 @@ public class ClajPinger extends Client {
     else requestRoomInfo(roomId);
   }
 
+  /**
+   * Requests the room list and keeps the connection open to receive room changes. <br>
+   * Unlike other operations, this one never ends until {@link #unsubscribeRoomList()} is called or the
+   * connection is lost.
+   */
+  public void subscribeRoomList(String host, int port, ClajRoomSubscription<?> sub) {
+    if (!canceling) {
+      try { connect(host, port); }
+      catch (Exception e) {
+        resetSubscriptionState(sub);
+        runSubscriptionFailed(e);
+        return;
+      }
+    } else close();
+    resetSubscriptionState(sub);
+    setRequestTimeout(listTimeout);
+    subscribing = true;
+    if (canceling) cancel();
+    else requestRoomListSubscription();
+  }
+
+  /** Notifies the server and closes the connection, without triggering callbacks. */
+  public void unsubscribeRoomList() {
+    if (subscription == null) return;
+    resetSubscriptionState(null);
+    if (isConnected()) sendTCP(RoomListUnsubscribePacket.instance);
+    close();
+  }
+
   protected void requestServerStatus() {
     sendUDP(FrameworkMessage.discoverHost);
   }
@@ -442,6 +598,12 @@ public class ClajPinger extends Client {
     sendTCP(p);
   }
 
+  protected void requestRoomListSubscription() {
+    RoomListSubscribePacket p = new RoomListSubscribePacket();
+    p.type = provider.getType();
+    sendTCP(p);
+  }
+
   protected void requestRoomJoin(long roomId, boolean withPassword, short password) {
     RoomJoinRequestPacket p = new RoomJoinRequestPacket();
     p.roomId = roomId;
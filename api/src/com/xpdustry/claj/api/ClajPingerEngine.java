@@ -0,0 +1,863 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+
+import arc.func.Cons;
+import arc.net.ArcNet;
+import arc.net.ArcNetException;
+import arc.net.FrameworkMessage;
+import arc.net.FrameworkMessage.RegisterTCP;
+import arc.net.FrameworkMessage.RegisterUDP;
+import arc.struct.ObjectMap;
+import arc.struct.Queue;
+import arc.struct.Seq;
+import arc.util.Threads;
+import arc.util.io.ByteBufferInput;
+
+import com.xpdustry.claj.api.net.HostResolver;
+import com.xpdustry.claj.common.ClajNet;
+import com.xpdustry.claj.common.net.stream.StreamPacket;
+import com.xpdustry.claj.common.net.stream.StreamReceiver;
+import com.xpdustry.claj.common.packets.*;
+import com.xpdustry.claj.common.status.*;
+
+
+/**
+ * Non-blocking pinger running many concurrent operations over one {@link Selector} and one thread. <br>
+ * Unlike {@link ClajPinger}, that is a full arc client handling one operation at a time, requests to a server
+ * are sent over a persistent {@link Session}, that is reused by next requests until idle. Several requests can be
+ * in flight in the same session, their responses are matched using a request id. Join requests are sent over
+ * their own session, as the server closes the connection when denying them. Each operation has its own
+ * timeout, so probing many servers is not serialized into waves.
+ * <p>
+ * Room list subscriptions still uses {@link ClajPinger}.
+ * Callbacks are called using {@link ClajProvider#postTask(Runnable)}.
+ */
+public class ClajPingerEngine implements Runnable {
+  /** Size of the TCP read buffer of a session. Same as {@link ClajPinger}. */
+  public static int bufferSize = 8192;
+  /** Delay before re-sending an unanswered UDP message, in ms. */
+  public static int udpRetryDelay = 1000;
+  /**
+   * Delay after which a session without requests is closed, in ms. <br>
+   * The server kicks a connection {@code 10} seconds after connecting, unless it sent a list, info or join request.
+   * So a session is only kept open if its first request was sent soon enough.
+   */
+  public static int sessionIdleTimeout = 8 * 1000;
+  /**
+   * If {@code true}, pings are only discovery datagrams sent from a shared socket, without opening a connection
+   * to the server. Else, the ping is sent through a session, like {@link ClajPinger#pingHost}.
+   */
+  public static boolean udpPing = true;
+  /** Number of discovery datagrams sent per UDP ping. */
+  public static int pingSamples = 3;
+  /** Delay between two samples of an UDP ping, in ms. */
+  public static int pingInterval = 100;
+  /** Delay after which a sample of an UDP ping is considered lost, in ms. */
+  public static int pingSampleTimeout = 1000;
+
+  protected final ClajProvider provider;
+  protected final ClajClientSerializer serialization = new ClajClientSerializer();
+  protected final ByteBuffer writeBuffer = ByteBuffer.allocate(bufferSize), udpBuffer = ByteBuffer.allocate(bufferSize);
+  protected final Queue<Operation> pending = new Queue<>();
+  protected final Seq<Operation> running = new Seq<>(false, 16, Operation.class);
+  /** Opened sessions, by server address. Only used in the engine thread. */
+  protected final ObjectMap<InetSocketAddress, Session> sessions = new ObjectMap<>();
+  /** Opened sessions that are not shared. Only used in the engine thread. */
+  protected final Seq<Session> dedicatedSessions = new Seq<>(false, 4, Session.class);
+  /** UDP pings waiting for a reply, by server address. Only used in the engine thread. */
+  protected final ObjectMap<InetSocketAddress, Seq<UdpPing>> pings = new ObjectMap<>();
+  /** Shared socket used by UDP pings. Opened in the engine thread when needed. */
+  protected DatagramChannel pingChannel;
+  protected Selector selector;
+  protected volatile boolean shutdown = true;
+  /** Incremented at each {@link #cancel()}, operations submitted before are canceled. */
+  protected volatile int cancels;
+  protected int lastRequestId;
+
+  public ClajPingerEngine(ClajProvider provider) {
+    this.provider = provider;
+  }
+
+  public boolean isRunning() {
+    return !shutdown;
+  }
+
+  /** Starts the engine thread, if not already running. */
+  public synchronized void start() {
+    if (!shutdown) return;
+    try { selector = Selector.open(); }
+    catch (IOException e) { throw new ArcNetException("Unable to open the selector", e); }
+    shutdown = false;
+    Threads.daemon("Claj Pinger Engine", this);
+  }
+
+  /** Stops the engine thread, running operations are canceled and sessions closed. */
+  public synchronized void stop() {
+    if (shutdown) return;
+    shutdown = true;
+    selector.wakeup();
+  }
+
+  /** Cancels all running and pending operations. Opened sessions are kept. */
+  public void cancel() {
+    cancels++;
+    if (!shutdown) selector.wakeup();
+  }
+
+  /** @return the approximate number of running or pending operations. */
+  public int operations() {
+    return running.size + pending.size;
+  }
+
+  /** @return the approximate number of opened sessions. */
+  public int sessions() {
+    return sessions.size + dedicatedSessions.size;
+  }
+
+  @Override
+  public void run() {
+    while (!shutdown) {
+      try { update(250); }
+      catch (ClosedSelectorException e) { break; }
+      catch (Exception e) { ArcNet.handleError(e); }
+    }
+
+    for (Operation op : running) op.failed(new RuntimeException(op.name() + " canceled"));
+    running.clear();
+    synchronized (pending) {
+      while (!pending.isEmpty()) pending.removeFirst().failed(new RuntimeException("Operation canceled"));
+    }
+    for (Session session : sessions.values().toSeq()) session.close();
+    for (Session session : dedicatedSessions.toArray()) session.close();
+    sessions.clear();
+    dedicatedSessions.clear();
+    pings.clear();
+    try {
+      if (pingChannel != null) pingChannel.close();
+      selector.close();
+    } catch (IOException ignored) {}
+    pingChannel = null;
+  }
+
+  protected void update(int timeout) throws IOException {
+    synchronized (pending) {
+      while (!pending.isEmpty()) begin(pending.removeFirst());
+    }
+
+    // Wake up more often to send ping samples in time
+    selector.select(pings.isEmpty() ? timeout : Math.min(timeout, pingInterval));
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      if (key.channel() == pingChannel) {
+        if (key.isValid() && key.isReadable()) readPings();
+        continue;
+      }
+
+      Session session = (Session)key.attachment();
+      if (session.closed || !key.isValid()) continue;
+      try {
+        if (key.isConnectable() && session.tcp.finishConnect()) {
+          key.interestOps(SelectionKey.OP_READ);
+          session.connected();
+        }
+        if (key.isValid() && key.isReadable()) {
+          if (key.channel() == session.tcp) session.readTCP();
+          else session.readUDP();
+        }
+      } catch (Exception e) { session.failed(e); }
+    }
+
+    long now = System.currentTimeMillis();
+    int cancel = cancels;
+    for (int i=0; i<running.size; i++) {
+      Operation op = running.items[i];
+      if (!op.done) {
+        try {
+          if (op.cancels != cancel) op.failed(new RuntimeException(op.name() + " canceled"));
+          else if (now >= op.deadline) op.failed(new RuntimeException(op.name() + " timed out"));
+          else op.update(now);
+        } catch (Exception e) { op.failed(e); }
+      }
+      if (op.done) running.remove(i--);
+    }
+
+    // Sessions can be closed while updating
+    if (!sessions.isEmpty()) {
+      for (Session session : sessions.values().toSeq()) {
+        try { session.update(now); }
+        catch (Exception e) { session.failed(e); }
+      }
+    }
+    if (!dedicatedSessions.isEmpty()) {
+      for (Session session : dedicatedSessions.toArray()) {
+        try { session.update(now); }
+        catch (Exception e) { session.failed(e); }
+      }
+    }
+  }
+
+  /** Starts the operation. Called in the engine thread. */
+  protected void begin(Operation op) {
+    if (op.cancels != cancels) {
+      op.failed(new RuntimeException(op.name() + " canceled"));
+      return;
+    }
+    running.add(op);
+    op.deadline = System.currentTimeMillis() + op.timeout;
+
+    try { op.begin(); }
+    catch (Exception e) { op.failed(e); }
+  }
+
+  /** Reads all replies received by the shared ping socket, and dispatches them by address. */
+  protected void readPings() throws IOException {
+    ByteBuffer buffer = udpBuffer;
+    while (true) {
+      buffer.clear();
+      SocketAddress from = pingChannel.receive(buffer);
+      if (from == null) break;
+      Seq<UdpPing> waiting = pings.get((InetSocketAddress)from);
+      if (waiting == null) continue;
+
+      buffer.flip();
+      ServerInfoPacket packet = readServerInfo(buffer);
+      if (packet == null) continue;
+
+      long now = System.currentTimeMillis();
+      for (int i=0; i<waiting.size; i++) {
+        UdpPing ping = waiting.get(i);
+        try { ping.replied(packet, now); }
+        catch (Exception e) { ping.failed(e); }
+        if (ping.done) i--; // removed from the list
+      }
+    }
+  }
+
+  protected DatagramChannel pingChannel() throws IOException {
+    if (pingChannel == null) {
+      pingChannel = selector.provider().openDatagramChannel();
+      pingChannel.configureBlocking(false);
+      pingChannel.register(selector, SelectionKey.OP_READ);
+    }
+    return pingChannel;
+  }
+
+  /** Same as {@link ClajPinger.Serializer}. @return {@code null} if this is not a discovery reply. */
+  protected ServerInfoPacket readServerInfo(ByteBuffer buffer) {
+    if (buffer.hasRemaining() && buffer.get() != ClajNet.id) return null;
+    ServerInfoPacket packet = new ServerInfoPacket().r(new ByteBufferInput(buffer));
+    packet.handled();
+    return packet;
+  }
+
+  /** @return the session to the server, opening a new one if needed. Called in the engine thread. */
+  protected Session session(String host, int port, InetSocketAddress address) throws IOException {
+    Session session = sessions.get(address);
+    if (session == null || session.closed) {
+      session = new Session(host, port, address, true);
+      sessions.put(address, session);
+      session.open();
+    }
+    return session;
+  }
+
+  /** @return a new session, not shared with other requests and closed once its request is done. */
+  protected Session dedicatedSession(String host, int port, InetSocketAddress address) throws IOException {
+    Session session = new Session(host, port, address, false);
+    dedicatedSessions.add(session);
+    session.open();
+    return session;
+  }
+
+  protected synchronized int nextRequestId() {
+    // -1 means no request id
+    if (++lastRequestId == -1) lastRequestId++;
+    return lastRequestId;
+  }
+
+  /**
+   * Resolves the address of the operation, using the {@link HostResolver#global global resolver},
+   * then queues it in the engine thread.
+   */
+  protected void submit(Operation op) {
+    start();
+    op.cancels = cancels;
+    HostResolver.global.resolve(op.host, address -> {
+      op.address = new InetSocketAddress(address, op.port);
+      synchronized (pending) { pending.addLast(op); }
+      selector.wakeup();
+    }, op::failed);
+  }
+
+  protected ClajRoom<?> makeRoom(String host, int port, long roomId, boolean isProtected, ClajType type,
+                                 ByteBuffer state) {
+    return new ClajRoom<>(
+      roomId, true, isProtected,
+      state, provider,
+      new ClajLink(host, port, roomId),
+      type
+    );
+  }
+
+  protected ByteBuffer makeJoinPacket(RoomJoinRequestPacket request) {
+    ByteBuffer buff = ByteBuffer.allocate(64);
+    serialization.write(buff, request.toJoinPacket());
+    return (ByteBuffer)buff.flip();
+  }
+
+  // Operations
+
+  /**
+   * Same as {@link ClajPinger#pingHost(String, int, Cons, Cons)}. <br>
+   * In {@link #udpPing} mode, the {@link ServerState#ping ping} is the average of received samples, and
+   * {@link ServerState#jitter jitter} and {@link ServerState#loss loss} are also measured.
+   */
+  public void pingHost(String host, int port, Cons<ServerState> success, Cons<Exception> failed) {
+    if (udpPing) {
+      submit(new UdpPing(host, port, pingSamples, success, failed));
+      return;
+    }
+
+    submit(new Request(host, port, ClajPinger.pingTimeout, failed) {
+      long sentTime;
+
+      @Override
+      String name() { return "Ping"; }
+
+      @Override
+      void send() throws IOException {
+        // Discovery doesn't need a registered connection, but this ensures that the server is reachable
+        sentTime = System.currentTimeMillis();
+        session.sendUDP(FrameworkMessage.discoverHost);
+      }
+
+      @Override
+      void update(long now) throws IOException {
+        // Re-send it if lost
+        if (sent && now - sentTime >= udpRetryDelay) send();
+      }
+
+      @Override
+      boolean receivedUDP(ServerInfoPacket packet) {
+        int ping = (int)(System.currentTimeMillis() - sentTime);
+        if (success != null) post(success, new ServerState(host, port, packet.version, ping, packet.load));
+        finish();
+        return true;
+      }
+    });
+  }
+
+  /** Same as {@link ClajPinger#requestRoomList(String, int, Cons, Cons)}. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <T> void requestRoomList(String host, int port, Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
+    submit(new Request(host, port, ClajPinger.listTimeout, failed) {
+      @Override
+      String name() { return "Room listing"; }
+
+      @Override
+      void send() throws IOException {
+        RoomListRequestPacket p = new RoomListRequestPacket();
+        p.type = provider.getType();
+        p.requestId = id;
+        session.sendTCP(p);
+      }
+
+      @Override
+      boolean received(Packet packet) {
+        if (!(packet instanceof RoomListPacket p) || packet instanceof RoomListUpdatePacket ||
+            !matches(p.requestId)) return false;
+        if (rooms != null) {
+          Seq<ClajRoom<?>> list = new Seq<>(p.size);
+          ClajType type = provider.getType();
+          for (int i=0; i<p.size; i++) {
+            if (p.rooms[i] == ClajProxy.UNCREATED_ROOM) continue; // ignore invalid rooms
+            list.add(makeRoom(host, port, p.rooms[i], p.isProtected[i], type, p.states[i]));
+          }
+          post((Cons)rooms, list);
+        }
+        finish();
+        return true;
+      }
+    });
+  }
+
+  /** Same as {@link ClajPinger#requestRoomInfo(String, int, long, Cons, Runnable, Cons)}. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <T> void requestRoomInfo(String host, int port, long roomId, Cons<ClajRoom<T>> info, Runnable notFound,
+                                  Cons<Exception> failed) {
+    submit(new Request(host, port, ClajPinger.infoTimeout, failed) {
+      @Override
+      String name() { return "Room info"; }
+
+      @Override
+      void send() throws IOException {
+        RoomInfoRequestPacket p = new RoomInfoRequestPacket();
+        p.roomId = roomId;
+        p.requestId = id;
+        session.sendTCP(p);
+      }
+
+      @Override
+      boolean received(Packet packet) {
+        if (packet instanceof RoomInfoPacket p && p.roomId == roomId && matches(p.requestId)) {
+          if (info != null) post((Cons)info, makeRoom(host, port, p.roomId, p.isProtected, p.type, p.state));
+        } else if (packet instanceof RoomInfoDeniedPacket p && matches(p.requestId)) {
+          if (notFound != null) provider.postTask(notFound);
+        } else return false;
+        finish();
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Same as {@link ClajPinger#joinRoom(String, int, long, short, Cons, Cons, Cons)}. <br>
+   * The request uses a dedicated session, as the server closes the connection if the join request is denied.
+   *
+   * @param password {@link ClajPinger#NO_PASSWORD} for no password.
+   */
+  public void joinRoom(String host, int port, long roomId, short password, Cons<ByteBuffer> success,
+                       Cons<RejectReason> reject, Cons<Exception> failed) {
+    submit(new Request(host, port, ClajPinger.joinTimeout, failed) {
+      RoomJoinRequestPacket request;
+
+      @Override
+      String name() { return "Room join"; }
+
+      @Override
+      boolean dedicated() { return true; }
+
+      @Override
+      void send() throws IOException {
+        request = new RoomJoinRequestPacket();
+        request.roomId = roomId;
+        request.withPassword = password != ClajPinger.NO_PASSWORD;
+        request.password = password;
+        request.type = provider.getType();
+        request.requestId = id;
+        session.sendTCP(request);
+      }
+
+      @Override
+      boolean received(Packet packet) {
+        if (packet instanceof RoomJoinAcceptedPacket p && p.roomId == roomId && matches(p.requestId)) {
+          if (success != null) post(success, makeJoinPacket(request));
+        } else if (packet instanceof RoomJoinDeniedPacket p && p.roomId == roomId && matches(p.requestId)) {
+          if (reject != null) post(reject, p.reason);
+        } else return false;
+        finish();
+        return true;
+      }
+    });
+  }
+
+
+  /** An operation and its state. Methods are called in the engine thread. */
+  protected abstract class Operation {
+    final String host;
+    final int port, timeout;
+    final Cons<Exception> failedCallback;
+    InetSocketAddress address;
+    int cancels;
+    long deadline;
+    volatile boolean done;
+
+    Operation(String host, int port, int timeout, Cons<Exception> failed) {
+      this.host = host;
+      this.port = port;
+      this.timeout = timeout;
+      this.failedCallback = failed;
+    }
+
+    abstract String name();
+
+    /** Called when the address is resolved. */
+    abstract void begin() throws IOException;
+
+    /** Called at each engine update, if the operation is not timed out. */
+    void update(long now) throws IOException {}
+
+    <T> void post(Cons<T> callback, T object) {
+      provider.postTask(() -> callback.get(object));
+    }
+
+    void failed(Exception e) {
+      if (done) return;
+      if (failedCallback != null) post(failedCallback, e);
+      finish();
+    }
+
+    void finish() {
+      done = true;
+    }
+  }
+
+
+  /** A request sent through a {@link Session}. */
+  protected abstract class Request extends Operation {
+    final int id = nextRequestId();
+    Session session;
+    boolean sent;
+
+    Request(String host, int port, int timeout, Cons<Exception> failed) {
+      super(host, port, timeout, failed);
+    }
+
+    @Override
+    void begin() throws IOException {
+      session = dedicated() ? dedicatedSession(host, port, address) : session(host, port, address);
+      session.add(this);
+    }
+
+    /** @return whether the request must not share its session, e.g. if the server can close it. */
+    boolean dedicated() { return false; }
+
+    /** Called when the session is ready. */
+    abstract void send() throws IOException;
+
+    /** @return whether the packet was the response of this request. */
+    boolean received(Packet packet) { return false; }
+
+    /** @return whether the packet was the response of this request. */
+    boolean receivedUDP(ServerInfoPacket packet) { return false; }
+
+    /** Older servers doesn't reply the request id, in this case the first request waiting for it is used. */
+    boolean matches(int requestId) {
+      return requestId == -1 || requestId == id;
+    }
+
+    @Override
+    void finish() {
+      super.finish();
+      if (session != null) session.remove(this);
+    }
+  }
+
+
+  /**
+   * Persistent connection to a server, opened when a {@link Request} is added and closed when idle. <br>
+   * Does the arc TCP/UDP registration itself, requests are sent once registered.
+   */
+  protected class Session {
+    final String host;
+    final int port;
+    final InetSocketAddress address;
+    /** Whether the session is reused by other requests, or closed once its request is done. */
+    final boolean shared;
+    final Seq<Request> requests = new Seq<>();
+    final StreamReceiver streams = new StreamReceiver();
+    final ByteBuffer readBuffer = ByteBuffer.allocate(bufferSize);
+    SocketChannel tcp;
+    DatagramChannel udp;
+    int connectionID;
+    boolean connected, registered, closed;
+    /** Whether this session is already the fallback of another one. */
+    boolean retried;
+    long deadline, lastRegister, lastActive;
+
+    Session(String host, int port, InetSocketAddress address, boolean shared) {
+      this.host = host;
+      this.port = port;
+      this.address = address;
+      this.shared = shared;
+    }
+
+    void open() throws IOException {
+      deadline = lastActive = System.currentTimeMillis();
+      deadline += ClajPinger.connectTimeout;
+      udp = selector.provider().openDatagramChannel();
+      udp.configureBlocking(false);
+      udp.connect(address);
+      udp.register(selector, SelectionKey.OP_READ, this);
+
+      tcp = selector.provider().openSocketChannel();
+      tcp.configureBlocking(false);
+      tcp.socket().setTcpNoDelay(true);
+      if (tcp.connect(address)) {
+        tcp.register(selector, SelectionKey.OP_READ, this);
+        connected();
+      } else tcp.register(selector, SelectionKey.OP_CONNECT, this);
+    }
+
+    void connected() {
+      connected = true;
+      HostResolver.global.confirm(host, address.getAddress());
+    }
+
+    void registered() throws IOException {
+      registered = true;
+      for (int i=0; i<requests.size; i++) {
+        Request request = requests.get(i);
+        if (request.sent) continue;
+        request.sent = true;
+        request.send();
+      }
+    }
+
+    void add(Request request) throws IOException {
+      requests.add(request);
+      lastActive = System.currentTimeMillis();
+      if (!registered) return;
+      request.sent = true;
+      request.send();
+    }
+
+    void remove(Request request) {
+      requests.remove(request, true);
+      lastActive = System.currentTimeMillis();
+      if (!shared && requests.isEmpty()) close();
+    }
+
+    void update(long now) throws IOException {
+      if (!registered) {
+        if (now >= deadline) throw new IOException("Connection timed out");
+        // Like arc, retry the UDP registration until the server replies
+        if (connectionID != 0 && now - lastRegister >= udpRetryDelay) registerUDP(now);
+      } else if (requests.isEmpty() && now - lastActive >= sessionIdleTimeout) close();
+    }
+
+    void registerUDP(long now) throws IOException {
+      RegisterUDP register = new RegisterUDP();
+      register.connectionID = connectionID;
+      lastRegister = now;
+      sendUDP(register);
+    }
+
+    void readTCP() throws IOException {
+      ByteBuffer buffer = readBuffer;
+      if (tcp.read(buffer) == -1) throw new IOException("Connection closed by the server");
+      buffer.flip();
+
+      int lengthLength = serialization.getLengthLength();
+      while (!closed && buffer.remaining() >= lengthLength) {
+        int start = buffer.position();
+        int length = serialization.readLength(buffer);
+        if (length < 0 || length > buffer.capacity() - lengthLength)
+          throw new IOException("Invalid object length: " + length);
+        if (buffer.remaining() < length) {
+          buffer.position(start);
+          break;
+        }
+
+        int end = buffer.position() + length, limit = buffer.limit();
+        buffer.limit(end);
+        Object object = serialization.read(buffer);
+        buffer.limit(limit).position(end);
+        if (object != null) received(object);
+      }
+      buffer.compact();
+    }
+
+    void readUDP() throws IOException {
+      ByteBuffer buffer = (ByteBuffer)udpBuffer.clear();
+      if (udp.read(buffer) <= 0) return;
+      buffer.flip();
+      ServerInfoPacket packet = readServerInfo(buffer);
+      if (packet == null) return;
+      for (int i=0; i<requests.size; i++) {
+        if (requests.get(i).receivedUDP(packet)) break;
+      }
+    }
+
+    void received(Object object) throws IOException {
+      if (object instanceof RegisterTCP register) {
+        connectionID = register.connectionID;
+        registerUDP(System.currentTimeMillis());
+
+      } else if (object instanceof RegisterUDP) {
+        registered();
+
+      } else if (object instanceof StreamPacket stream) {
+        Packet packet = streams.received(stream);
+        if (packet != null) {
+          packet.handled();
+          dispatch(packet);
+        }
+
+      } else if (object instanceof Packet packet) {
+        packet.handled();
+        dispatch(packet);
+      }
+    }
+
+    void dispatch(Packet packet) {
+      for (int i=0; i<requests.size; i++) {
+        Request request = requests.get(i);
+        if (request.sent && request.received(packet)) break;
+      }
+    }
+
+    void sendTCP(Object object) throws IOException {
+      ByteBuffer buffer = (ByteBuffer)writeBuffer.clear();
+      int lengthLength = serialization.getLengthLength();
+      buffer.position(lengthLength);
+      serialization.write(buffer, object);
+      int end = buffer.position();
+      buffer.position(0);
+      serialization.writeLength(buffer, end - lengthLength);
+      buffer.position(0).limit(end);
+      // Requests are small, they should always fit in the socket buffer
+      tcp.write(buffer);
+      if (buffer.hasRemaining()) throw new IOException("Unable to write the request");
+    }
+
+    void sendUDP(Object object) throws IOException {
+      ByteBuffer buffer = (ByteBuffer)writeBuffer.clear();
+      serialization.write(buffer, object);
+      buffer.flip();
+      udp.write(buffer);
+    }
+
+    /**
+     * Fails all requests and closes the session. <br>
+     * If the connection never succeeded, the requests are first moved once to a session using the address of
+     * the other family, if any, see {@link HostResolver#fallback(String, InetAddress)}.
+     */
+    void failed(Exception e) {
+      close();
+      InetAddress other = connected || retried ? null : HostResolver.global.fallback(host, address.getAddress());
+      if (other != null && !requests.isEmpty()) {
+        InetSocketAddress next = new InetSocketAddress(other, port);
+        try {
+          Session session = shared ? session(host, port, next) : dedicatedSession(host, port, next);
+          session.retried = true;
+          for (Request request : requests.toArray(Request.class)) {
+            request.address = next;
+            request.session = session;
+            request.sent = false;
+            session.add(request);
+          }
+          requests.clear();
+          return;
+        } catch (IOException ex) { e = ex; }
+      }
+      for (Request request : requests.toArray(Request.class)) request.failed(e);
+      requests.clear();
+    }
+
+    void close() {
+      if (closed) return;
+      closed = true;
+      if (!shared) dedicatedSessions.remove(this, true);
+      else if (sessions.get(address) == this) sessions.remove(address);
+      close(tcp);
+      close(udp);
+      streams.clear();
+    }
+
+    void close(Channel channel) {
+      if (channel == null) return;
+      try { channel.close(); }
+      catch (IOException ignored) {}
+    }
+  }
+
+
+  /** Connectionless ping, sending discovery datagrams from the {@link #pingChannel() shared socket}. */
+  protected class UdpPing extends Operation {
+    final Cons<ServerState> success;
+    final int samples;
+    int sent, received;
+    long sampleSent, lastSent;
+    /** Sum of round-trip times, and sum of differences between consecutive round-trip times. */
+    long rttSum, jitterSum;
+    int lastRtt = -1;
+    ServerInfoPacket info;
+
+    UdpPing(String host, int port, int samples, Cons<ServerState> success, Cons<Exception> failed) {
+      super(host, port, ClajPinger.pingTimeout, failed);
+      this.samples = Math.max(1, samples);
+      this.success = success;
+    }
+
+    @Override
+    String name() { return "Ping"; }
+
+    @Override
+    void begin() throws IOException {
+      pingChannel();
+      pings.get(address, Seq::new).add(this);
+      sample(System.currentTimeMillis());
+    }
+
+    void sample(long now) throws IOException {
+      ByteBuffer buffer = (ByteBuffer)writeBuffer.clear();
+      serialization.write(buffer, FrameworkMessage.discoverHost);
+      buffer.flip();
+      pingChannel.send(buffer, address);
+      sampleSent = lastSent = now;
+      sent++;
+    }
+
+    void replied(ServerInfoPacket packet, long now) throws IOException {
+      if (sampleSent == 0) return; // late reply of a lost sample
+      int rtt = (int)(now - sampleSent);
+      sampleSent = 0;
+      received++;
+      rttSum += rtt;
+      if (lastRtt != -1) jitterSum += Math.abs(rtt - lastRtt);
+      lastRtt = rtt;
+      info = packet;
+      update(now);
+    }
+
+    @Override
+    void update(long now) throws IOException {
+      // Count the sample as lost
+      if (sampleSent != 0 && now - sampleSent >= pingSampleTimeout) sampleSent = 0;
+      if (sampleSent != 0) return;
+
+      if (sent < samples) {
+        if (now - lastSent >= pingInterval) sample(now);
+      } else if (received == 0) {
+        failed(new RuntimeException("Ping timed out"));
+      } else {
+        if (success != null) {
+          int ping = (int)(rttSum / received);
+          float jitter = received > 1 ? (float)jitterSum / (received - 1) : 0;
+          float loss = 1f - (float)received / sent;
+          post(success, new ServerState(host, port, info.version, ping, info.load, jitter, loss));
+        }
+        finish();
+      }
+    }
+
+    @Override
+    void finish() {
+      super.finish();
+      if (address == null) return;
+      Seq<UdpPing> waiting = pings.get(address);
+      if (waiting == null) return;
+      waiting.remove(this, true);
+      if (waiting.isEmpty()) pings.remove(address);
+    }
+  }
+}
@@ -19,8 +19,11 @@
 
 package com.xpdustry.claj.api;
 
+import java.nio.ByteBuffer;
+
 import arc.func.Cons;
 import arc.func.Cons2;
+import arc.struct.ObjectMap;
 import arc.struct.Queue;
 import arc.struct.Seq;
 import arc.util.Threads;
@@ -37,11 +40,23 @@ public class ClajPingerManager {
   protected final ClajPinger[] pingers;
   protected final boolean[] reserved;
   protected final Queue<Cons2<ClajPinger, Runnable>> queue = new Queue<>();
+  /** Room list subscriptions by {@code host:port}. They have their own pinger, outside of the pool. */
+  protected final ObjectMap<String, ClajRoomSubscription<?>> subscriptions = new ObjectMap<>();
+  /** Incremented at each {@link #cancel()}, to know whether a task failed because of a cancellation. */
+  protected int cancels;
+  /**
+   * Runs pings, room lists, room infos and joins concurrently, over persistent sessions. <br>
+   * The pinger pool is kept for custom tasks.
+   */
+  public final ClajPingerEngine engine;
+  /** Cached ranking of relays, used for automatic room hosting. */
+  public final ClajRelayRanking ranking = new ClajRelayRanking(this);
 
   public ClajPingerManager(ClajProvider provider) { this(provider, 1); }
   public ClajPingerManager(ClajProvider provider, int workers) {
     this.workers = workers;
     this.provider = provider;
+    engine = provider.newPingerEngine();
     pingers = new ClajPinger[workers];
     reserved = new boolean[workers];
   }
@@ -124,6 +139,9 @@ public class ClajPingerManager {
   /** Dispose all pingers. */
   public void dispose() {
     cancel();
+    unsubscribeRooms();
+    ranking.stopRefreshing();
+    engine.stop();
     for (ClajPinger pinger : pingers) {
       if (pinger == null) continue;
       pinger.stop();
@@ -135,6 +153,7 @@ public class ClajPingerManager {
   /** Stop all pingers and cancel the queue. */
   public void stop() {
     cancel();
+    engine.stop();
     for (ClajPinger pinger : pingers) {
       if (pinger == null) continue;
       pinger.stop();
@@ -144,6 +163,8 @@ public class ClajPingerManager {
   /** Cancel the queue and current tasks. */
   public void cancel() {
     //arc.util.Log.info("manager start: @, @", Thread.currentThread().getName(), System.currentTimeMillis());
+    cancels++;
+    engine.cancel();
     for (ClajPinger pinger : pingers) {
       if (pinger == null) continue;
       pinger.setCancelState(true);
@@ -190,76 +211,84 @@ public class ClajPingerManager {
   }
 
   public void joinRoom(ClajLink link, Runnable success, Cons<RejectReason> reject, Cons<Exception> failed) {
-    if (link == null) return;
-    submit((pinger, finished) -> {
-      pinger.joinRoom(link.host, link.port, link.roomId, join -> {
-        provider.connectClient(link.host, link.port, success, join);
-        finished.run();
-      }, reason -> {
-        if (reject != null) reject.get(reason);
-        finished.run();
-      }, e -> {
-        if (failed != null) failed.get(e);
-        finished.run();
-      });
-    });
+    joinRoom(link, ClajPinger.NO_PASSWORD, success, reject, failed);
   }
 
   public void joinRoom(ClajLink link, short password, Runnable success, Cons<RejectReason> reject,
                        Cons<Exception> failed) {
     if (link == null) return;
-    submit((pinger, finished) -> {
-      pinger.joinRoom(link.host, link.port, link.roomId, password, join -> {
-        provider.connectClient(link.host, link.port, success, join);
-        finished.run();
-      }, reason -> {
-        if (reject != null) reject.get(reason);
-        finished.run();
-      }, e -> {
-        if (failed != null) failed.get(e);
-        finished.run();
-      });
+    // The client connects while the request is validated, and only sends its join packet once accepted
+    Cons<ByteBuffer> client = provider.preconnectClient(link.host, link.port, success);
+    engine.joinRoom(link.host, link.port, link.roomId, password, client, r -> {
+      client.get(null);
+      if (reject != null) reject.get(r);
+    }, e -> {
+      client.get(null);
+      if (failed != null) failed.get(e);
     });
   }
 
-  /** @apiNote async operation but blocking new tasks if a ping is already in progress */
+  /** @apiNote async operation, ran concurrently with others by the {@link #engine} */
   public void pingHost(String ip, int port, Cons<ServerState> success, Cons<Exception> failed) {
-    submit((pinger, finished) -> {
-      pinger.pingHost(ip, port, i -> {
-        if (success != null) success.get(i);
-        finished.run();
-      }, e -> {
-        if (failed != null) failed.get(e);
-        finished.run();
-      });
-    });
+    engine.pingHost(ip, port, success, failed);
   }
 
   public <T> void serverRooms(String ip, int port, Cons<Seq<ClajRoom<T>>> rooms, Cons<Exception> failed) {
-    submit((pinger, finished) -> {
-      pinger.<T>requestRoomList(ip, port, r -> {
-        if (rooms != null) rooms.get(r);
-        finished.run();
-      }, error -> {
-        if (failed != null) failed.get(error);
-        finished.run();
-      });
-    });
+    engine.requestRoomList(ip, port, rooms, failed);
   }
 
   public <T> void requestRoomInfo(ClajLink link, Cons<ClajRoom<T>> info, Runnable notFound, Cons<Exception> failed) {
     if (link == null) return;
-    submit((pinger, finished) -> {
-      pinger.<T>requestRoomInfo(link.host, link.port, link.roomId, r -> {
-        if (info != null) info.get(r);
-        finished.run();
-      }, () -> {
-        if (notFound != null) notFound.run();
-        finished.run();
-      }, error -> {
-        if (failed != null) failed.get(error);
-        finished.run();
-      });
-    });
+    engine.requestRoomInfo(link.host, link.port, link.roomId, info, notFound, failed);
+  }
+
+  /**
+   * Subscribes to the public room list of the server. A dedicated pinger is used and keeps its connection
+   * open, the server will push room changes until {@link ClajRoomSubscription#unsubscribe()} is called.
+   * <p>
+   * If already subscribed to this server, the existing subscription is returned and the callbacks are replaced.
+   *
+   * @param changed called in the main thread when the room list is received or has changed.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ClajRoomSubscription<T> subscribeRooms(String host, int port, Cons<ClajRoomSubscription<T>> changed,
+                                                    Cons<Exception> failed) {
+    String key = host + ':' + port;
+    ClajRoomSubscription<T> sub = (ClajRoomSubscription<T>)subscriptions.get(key);
+    if (sub != null && !sub.isClosed()) {
+      sub.setCallbacks(changed, failed);
+      return sub;
+    }
+
+    ClajPinger pinger = provider.newPinger();
+    ClajRoomSubscription<T> subscription = new ClajRoomSubscription<>(this, pinger, host, port, changed, failed);
+    subscriptions.put(key, subscription);
+    Threads.daemon("Claj Subscriber " + key, pinger);
+
+    Runnable task = () -> pinger.subscribeRoomList(host, port, subscription);
+    if (provider.getExecutor() == null) task.run();
+    else provider.getExecutor().submit(task);
+    return subscription;
+  }
+
+  public boolean isSubscribed(String host, int port) {
+    return subscriptions.containsKey(host + ':' + port);
+  }
+
+  /** Ends all room list subscriptions. */
+  public void unsubscribeRooms() {
+    for (ClajRoomSubscription<?> sub : subscriptions.values().toSeq()) sub.unsubscribe();
+    subscriptions.clear();
+  }
+
+  protected void removeSubscription(ClajRoomSubscription<?> sub) {
+    String key = sub.host + ':' + sub.port;
+    if (subscriptions.get(key) == sub) subscriptions.remove(key);
+  }
+
+  protected void disposePinger(ClajPinger pinger) {
+    pinger.stop();
+    try { pinger.dispose(); }
+    catch (Exception ignored) {}
   }
 }
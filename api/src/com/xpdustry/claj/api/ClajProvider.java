@@ -22,6 +22,7 @@ package com.xpdustry.claj.api;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 
+import arc.func.Cons;
 import arc.net.NetListener;
 
 import com.xpdustry.claj.common.packets.ConnectionPacketWrapPacket.Serializer;
@@ -41,6 +42,8 @@ public interface ClajProvider {
   default ClajProxy newProxy() { return new ClajProxy(this); }
   /** Used to create new pinger clients. Cannot be {@code null}. */
   default ClajPinger newPinger() { return new ClajPinger(this); }
+  /** Used to create the pinger engine. Cannot be {@code null}. */
+  default ClajPingerEngine newPingerEngine() { return new ClajPingerEngine(this); }
 
   /**
    * The implementation type, used to validate compatibility between room host and clients. <br>
@@ -56,6 +59,20 @@ public interface ClajProvider {
    */
   ClajVersion getVersion();
 
+  /**
+   * Whether proxies should coalesce packets sent to virtual connections. <br>
+   * If {@code true}, {@link ClajProxy#flush()} is called at the end of each application update,
+   * but implementations can also call it themselves, e.g. at the end of a game tick.
+   */
+  default boolean coalesceWrites() { return false; }
+
+  /**
+   * Number of connections opened by the room host to the relay, including the main one. <br>
+   * Clients are spread between them, so they don't share the same TCP stream.
+   * The relay can grant less than requested.
+   */
+  default int uplinkStripes() { return 1; }
+
   /** Listener added to all virtual connections. Can be {@code null}. */
   default NetListener getConnectionListener() { return null; }
 
@@ -79,6 +96,22 @@ public interface ClajProvider {
    */
   void connectClient(String host, int port, Runnable success, ByteBuffer joinPacket);
 
+  /**
+   * Starts connecting the client to the specified server while its join request is still being validated,
+   * so the connection handshake and the validation are done at the same time. <br>
+   * The returned callback is called once, in the main thread, with the join packet to send after connected
+   * when the request is accepted, or with {@code null} when it was rejected or failed.
+   * In that case, the connection must be closed quietly.
+   * <p>
+   * By default, the client is only connected once the request is accepted, using {@link #connectClient}.
+   * @param success can be {@code null} and must be called when connected and accepted.
+   */
+  default Cons<ByteBuffer> preconnectClient(String host, int port, Runnable success) {
+    return joinPacket -> {
+      if (joinPacket != null) connectClient(host, port, success, joinPacket);
+    };
+  }
+
   /**
    * <strong>Essential for the protocol to work!</strong>
    * <p>
@@ -23,10 +23,14 @@ import java.nio.ByteBuffer;
 
 import arc.func.Cons;
 import arc.net.DcReason;
+import arc.util.Log;
 
+import com.xpdustry.claj.api.net.DecodeWorkers;
 import com.xpdustry.claj.api.net.ProxyClient;
+import com.xpdustry.claj.api.net.VirtualConnection;
 import com.xpdustry.claj.common.ClajPackets.Connect;
 import com.xpdustry.claj.common.ClajPackets.Disconnect;
+import com.xpdustry.claj.common.net.PacketQueue;
 import com.xpdustry.claj.common.net.stream.StreamSender;
 import com.xpdustry.claj.common.packets.*;
 import com.xpdustry.claj.common.status.ClajType;
@@ -37,8 +41,17 @@ import com.xpdustry.claj.common.status.CloseReason;
 public class ClajProxy extends ProxyClient {
   /** Constant value saying that no room is created. This should be handled as an invalid id. */
   public static final long UNCREATED_ROOM = -1;
+  /**
+   * Size of the TCP write buffer, shared by all virtual connections. <br>
+   * It cannot grow after construction, packets are queued instead when it's full.
+   */
+  public static int writeBufferSize = 256 << 10;
 
   public final ClajProvider provider;
+  /** Connection packets decoded by {@link DecodeWorkers}, delivered in order by the proxy thread. */
+  protected final PacketQueue<Object> decoded;
+  /** Decoding threads of this proxy, while running, {@code null} if {@link DecodeWorkers#enabled() disabled}. */
+  protected volatile DecodeWorkers workers;
   public boolean isPublic, isProtected;
   public short roomPassword;
 
@@ -47,9 +60,34 @@ public class ClajProxy extends ProxyClient {
   protected long roomId = UNCREATED_ROOM;
   protected ClajLink link;
 
+  /** Striped connections opened to the room, when {@link ClajProvider#uplinkStripes()} is greater than 1. */
+  protected ClajProxy[] stripes = {};
+  /** The proxy owning this stripe, {@code null} if this is not a stripe. */
+  protected ClajProxy stripeOf;
+  protected int stripeIndex;
+  protected long stripeKey;
+
   public ClajProxy(ClajProvider provider) {
-    super(32768, 16384, new ClajClientSerializer(), provider.getConnectionListener(), provider::postTask);
+    super(writeBufferSize, 16384, new ClajClientSerializer(), provider.getConnectionListener());
     this.provider = provider;
+    setCoalescing(provider.coalesceWrites());
+    // Drained by the proxy thread, like packets decoded in place, the drain task is not needed
+    decoded = new PacketQueue<>(t -> wakeup(), (c, p) -> receiver.dispatch(p));
+
+    // Decode connection packets off the proxy thread, partitioned by connection to keep their order
+    receiver.setDecoder(p -> {
+      DecodeWorkers workers = this.workers;
+      if (workers == null) return false;
+      if (p instanceof ConnectionWrapperPacket wrap) workers.decode(wrap.peekConID(), wrap, decoded);
+      // Delivered after the packets still decoding, so none of them is handled after the room is closed.
+      // The event is given back to its pool by the receiver, so a copy is needed.
+      else if (p instanceof Disconnect d) {
+        Disconnect copy = new Disconnect();
+        copy.reason = d.reason;
+        workers.barrier(copy, decoded);
+      } else return false;
+      return true;
+    });
 
     receiver.handle(Connect.class, this::requestRoomId);
     receiver.handle(Disconnect.class, () -> runRoomClose(CloseReason.error));
@@ -76,6 +114,9 @@ public class ClajProxy extends ProxyClient {
     receiver.handle(RoomLinkPacket.class, p -> {
       if (!roomCreated()) runRoomCreated(p.roomId);
     });
+    receiver.handle(RoomStripeKeyPacket.class, p -> {
+      if (!isStripe() && roomCreated() && p.roomId == roomId) openStripes(p.key, p.count);
+    });
     receiver.handle(RoomStateRequestPacket.class, this::notifyGameState);
 
     receiver.handle(ClajTextMessagePacket.class, p -> {
@@ -102,6 +143,11 @@ public class ClajProxy extends ProxyClient {
     }
   }
 
+  @Override
+  protected void runPending() {
+    decoded.drain();
+  }
+
   // Helpers
   protected <T> void postTask(Cons<T> consumer, T object) { postTask(() -> consumer.get(object)); }
   protected void postTask(Runnable run) { provider.postTask(run); }
@@ -111,9 +157,10 @@ public class ClajProxy extends ProxyClient {
     this.roomId = roomId;
     link = new ClajLink(connectHost.getHostName(), connectTcpPort, roomId);
     // -1 is not allowed since it's used to specify an uncreated room
-    if (roomId == UNCREATED_ROOM) return;
+    if (roomId == UNCREATED_ROOM || isStripe()) return;
     if (roomCreated != null) postTask(roomCreated, link);
     notifyConfiguration();
+    if (provider.uplinkStripes() > 1) sendTCP(makeStripeRequestPacket(provider.uplinkStripes()));
     //TODO: also notify initial state?
   }
 
@@ -125,6 +172,7 @@ public class ClajProxy extends ProxyClient {
     if (roomClosed != null) postTask(roomClosed, reason);
     roomCreated = null;
     roomClosed = null;
+    closeStripes();
     close();
   }
 
@@ -141,6 +189,21 @@ public class ClajProxy extends ProxyClient {
     return link;
   }
 
+  @Override
+  public void start() {
+    if (workers == null && DecodeWorkers.enabled()) workers = new DecodeWorkers("CLaJ Decoder");
+    super.start();
+  }
+
+  @Override
+  public void stop() {
+    // Stopped first, so the disconnection caused by the stop is handled in place
+    DecodeWorkers workers = this.workers;
+    this.workers = null;
+    if (workers != null) workers.shutdown();
+    super.stop();
+  }
+
   @Override
   public void close() {
     if (isConnected()) closeRoom();
@@ -149,15 +212,97 @@ public class ClajProxy extends ProxyClient {
 
   public void closeRoom() {
     if (!roomCreated()) return;
-    sendTCP(makeRoomClosePacket());
+    // Only the host can close the room
+    if (!isStripe()) sendTCP(makeRoomClosePacket());
     runRoomClose(null);
   }
 
   public void requestRoomId() {
     if (roomCreated()) return;
-    sendTCP(makeRoomCreatePacket(provider.getVersion().majorVersion, provider.getType()));
+    if (isStripe()) sendTCP(makeStripeJoinPacket(stripeOf.roomId, stripeKey, stripeIndex));
+    else sendTCP(makeRoomCreatePacket(provider.getVersion().majorVersion, provider.getType()));
+  }
+
+  // region stripes
+
+  /** @return whether this proxy is a striped connection of another one. */
+  public boolean isStripe() {
+    return stripeOf != null;
+  }
+
+  public ClajProxy[] getStripes() {
+    return stripes;
+  }
+
+  /** @return the virtual connections of this proxy and its stripes. */
+  public VirtualConnection[] getAllConnections() {
+    if (stripes.length == 0) return getConnections();
+    int size = getConnections().length;
+    for (ClajProxy s : stripes) size += s.getConnections().length;
+    VirtualConnection[] all = new VirtualConnection[size];
+    VirtualConnection[] cons = getConnections();
+    System.arraycopy(cons, 0, all, 0, cons.length);
+    size = cons.length;
+    for (ClajProxy s : stripes) {
+      cons = s.getConnections();
+      System.arraycopy(cons, 0, all, size, cons.length);
+      size += cons.length;
+    }
+    return all;
   }
 
+  /** Writes packets coalesced by this proxy and its stripes. */
+  public void flushAll() {
+    flush();
+    for (ClajProxy s : stripes) s.flush();
+  }
+
+  /**
+   * Opens the striped connections granted by the server. <br>
+   * The server assigns each new client to a stripe, which will handle its virtual connection.
+   * Clients are assigned to the host if their stripe is not connected.
+   */
+  protected void openStripes(long key, int count) {
+    if (stripes.length > 0 || count <= 1) return;
+    ClajProxy[] opened = new ClajProxy[count - 1];
+    for (int i=0; i<opened.length; i++) {
+      ClajProxy stripe = opened[i] = provider.newProxy();
+      stripe.stripeOf = this;
+      stripe.stripeIndex = i + 1;
+      stripe.stripeKey = key;
+      stripe.setDefaultConfiguration(isPublic, isProtected, roomPassword);
+    }
+    stripes = opened;
+
+    for (ClajProxy stripe : opened) {
+      Runnable task = () -> {
+        try {
+          if (!stripe.isRunning()) stripe.start();
+          stripe.connect(defaultTimeout, connectHost, connectTcpPort, connectUdpPort);
+        } catch (Exception e) {
+          Log.warn("Unable to open stripe @ of room @, its clients will use the host connection.",
+                   stripe.stripeIndex, link);
+          Log.err(e);
+        }
+      };
+      if (provider.getExecutor() == null) task.run();
+      else provider.getExecutor().submit(task);
+    }
+  }
+
+  protected void closeStripes() {
+    ClajProxy[] opened = stripes;
+    stripes = new ClajProxy[0];
+    for (ClajProxy stripe : opened) {
+      stripe.closeRoom();
+      stripe.stop();
+      try { stripe.dispose(); }
+      catch (Exception ignored) {}
+    }
+  }
+
+  // end region
+
   public void setDefaultConfiguration(boolean isPublic, boolean isProtected, short roomPassword) {
     boolean notify = this.isPublic != isPublic
                   || this.isProtected != isProtected
@@ -210,9 +355,23 @@ public class ClajProxy extends ProxyClient {
     return RoomClosureRequestPacket.instance;
   }
 
+  protected Packet makeStripeRequestPacket(int count) {
+    RoomStripeRequestPacket p = new RoomStripeRequestPacket();
+    p.count = count;
+    return p;
+  }
+
+  protected Packet makeStripeJoinPacket(long roomId, long key, int index) {
+    RoomStripeJoinPacket p = new RoomStripeJoinPacket();
+    p.roomId = roomId;
+    p.key = key;
+    p.index = index;
+    return p;
+  }
+
   @Override
   protected Packet makeConWrapPacket(int conId, Object object, boolean tcp) {
-    ConnectionPacketWrapPacket p = new ConnectionPacketWrapPacket();
+    ConnectionPacketWrapPacket p = ConnectionPacketWrapPacket.pool.obtain();
     p.conID = conId;
     p.isTCP = tcp;
     p.object = object;
@@ -221,9 +380,15 @@ public class ClajProxy extends ProxyClient {
 
   @Override
   protected Packet makeConClosePacket(int conId, DcReason reason) {
-    ConnectionClosedPacket p = new ConnectionClosedPacket();
+    ConnectionClosedPacket p = ConnectionClosedPacket.pool.obtain();
     p.conID = conId;
     p.reason = reason;
     return p;
   }
+
+  @Override
+  protected void freePacket(Object packet) {
+    if (packet instanceof ConnectionPacketWrapPacket wrap) ConnectionPacketWrapPacket.pool.free(wrap);
+    else if (packet instanceof ConnectionClosedPacket closed) ConnectionClosedPacket.pool.free(closed);
+  }
 }
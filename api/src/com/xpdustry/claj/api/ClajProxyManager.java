@@ -158,6 +158,13 @@ public class ClajProxyManager {
     }
   }
 
+  /** Writes packets coalesced by all proxies. */
+  public void flush() {
+    for (ClajProxy proxy : proxies) {
+      if (proxy != null) proxy.flushAll();
+    }
+  }
+
   /** Dispose all proxies. */
   public void dispose() {
     for (ClajProxy proxy : proxies) {
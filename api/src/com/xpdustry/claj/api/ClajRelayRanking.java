@@ -0,0 +1,241 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api;
+
+import arc.func.Boolf;
+import arc.func.Cons;
+import arc.struct.Seq;
+import arc.util.Time;
+import arc.util.Timer;
+
+import com.xpdustry.claj.common.status.AdmissionHint;
+import com.xpdustry.claj.common.status.ServerLoad;
+import com.xpdustry.claj.common.status.ServerState;
+
+
+/**
+ * Cached ranking of the known relays, used to automatically choose the best one for room hosting. <br>
+ * Relays are probed in parallel using the {@link ClajPingerManager#engine}, and scored by their
+ * latency, their packet loss and their advertised load. A lower score is better.
+ * <p>
+ * The ranking can be refreshed periodically in background using {@link #startRefreshing()},
+ * so choosing a relay doesn't have to wait for probes.
+ * <p>
+ * Must only be used in the main thread.
+ */
+public class ClajRelayRanking {
+  /** Delay between two automatic refreshes, in seconds. */
+  public float refreshInterval = 30f;
+  /** Weight of the new sample in the smoothed latency and loss. */
+  public float smoothing = 0.25f;
+  /** Score penalty for a {@code 100%} loss, in ms. */
+  public float lossPenalty = 1000f;
+  /** Score penalty per ms of jitter. */
+  public float jitterPenalty = 1f;
+  /** Score penalty if the relay advertises itself as busy, in ms. */
+  public float busyPenalty = 250f;
+  /** Score penalty per room hosted by the relay, in ms. */
+  public float roomPenalty = 0.5f;
+  /** Score penalty per MB/s of network usage of the relay, in ms. */
+  public float speedPenalty = 5f;
+
+  protected final ClajPingerManager manager;
+  protected final Seq<Relay> relays = new Seq<>();
+  protected final Seq<Runnable> waiting = new Seq<>();
+  protected int probing;
+  protected long lastRefresh = -1;
+  protected Timer.Task refreshTask;
+
+  public ClajRelayRanking(ClajPingerManager manager) {
+    this.manager = manager;
+  }
+
+  /** @return the relays, sorted by score after a refresh. */
+  public Seq<Relay> relays() {
+    return relays;
+  }
+
+  public Relay find(String host, int port) {
+    return relays.find(r -> r.port == port && r.host.equals(host));
+  }
+
+  /** Adds a relay to the ranking, or returns the existing one. */
+  public Relay add(String host, int port) {
+    Relay relay = find(host, port);
+    if (relay == null) relays.add(relay = new Relay(host, port));
+    return relay;
+  }
+
+  public void remove(String host, int port) {
+    relays.remove(r -> r.port == port && r.host.equals(host));
+  }
+
+  /** Removes relays not matching the predicate, stats of kept relays are preserved. */
+  public void retain(Boolf<Relay> keep) {
+    relays.removeAll(r -> !keep.get(r));
+  }
+
+  public void clear() {
+    relays.clear();
+  }
+
+  public boolean isRefreshing() {
+    return probing > 0;
+  }
+
+  /** Whether the ranking was never refreshed, or the last refresh is older than {@link #refreshInterval}. */
+  public boolean isStale() {
+    return lastRefresh == -1 || Time.timeSinceMillis(lastRefresh) >= refreshInterval * 1000;
+  }
+
+  /** @return the best relay of the current ranking, or {@code null} if none is reachable. */
+  public Relay peekBest() {
+    Relay relay = relays.isEmpty() ? null : relays.first();
+    return relay == null || relay.score == Float.POSITIVE_INFINITY ? null : relay;
+  }
+
+  /**
+   * Gives the best relay using the cached ranking. <br>
+   * Relays are only probed before if the ranking was never refreshed,
+   * else a refresh is started in background if the ranking is stale.
+   *
+   * @param result called with {@code null} if no relay is reachable.
+   */
+  public void best(Cons<Relay> result) {
+    if (lastRefresh == -1) refresh(() -> result.get(peekBest()));
+    else {
+      result.get(peekBest());
+      if (isStale()) refresh(null);
+    }
+  }
+
+  /** Refreshes the ranking every {@link #refreshInterval} seconds. */
+  public void startRefreshing() {
+    if (refreshTask != null) return;
+    refreshTask = Timer.schedule(() -> refresh(null), 0f, refreshInterval);
+  }
+
+  public void stopRefreshing() {
+    if (refreshTask == null) return;
+    refreshTask.cancel();
+    refreshTask = null;
+  }
+
+  /**
+   * Probes all relays in parallel and sorts them by score.
+   * @param done called when all probes are finished, can be {@code null}.
+   */
+  public void refresh(Runnable done) {
+    if (done != null) waiting.add(done);
+    if (probing > 0) return;
+    if (relays.isEmpty()) {
+      finished();
+      return;
+    }
+
+    probing = relays.size;
+    for (Relay relay : relays) probe(relay);
+  }
+
+  protected void probe(Relay relay) {
+    int cancels = manager.cancels;
+    manager.pingHost(relay.host, relay.port, s -> {
+      relay.reached(s, smoothing);
+      probed();
+    }, e -> {
+      // A canceled probe is not a loss
+      if (cancels == manager.cancels) relay.lost(smoothing);
+      probed();
+    });
+  }
+
+  protected void probed() {
+    if (probing == 0 || --probing > 0) return;
+    finished();
+  }
+
+  protected void finished() {
+    lastRefresh = Time.millis();
+    for (Relay relay : relays) relay.score = score(relay);
+    relays.sort((a, b) -> Float.compare(a.score, b.score));
+
+    Runnable[] tasks = waiting.toArray(Runnable.class);
+    waiting.clear();
+    for (Runnable task : tasks) task.run();
+  }
+
+  /** @return the score of the relay, {@link Float#POSITIVE_INFINITY} if it should not be used. */
+  public float score(Relay relay) {
+    ServerState state = relay.state;
+    if (!relay.reachable || state == null ||
+        state.version != manager.provider().getVersion().majorVersion) return Float.POSITIVE_INFINITY;
+
+    float score = relay.rtt + relay.loss * lossPenalty + state.jitter * jitterPenalty;
+    ServerLoad load = state.load;
+    if (load != null) {
+      if (load.admission == AdmissionHint.closing) return Float.POSITIVE_INFINITY;
+      if (load.admission == AdmissionHint.busy) score += busyPenalty;
+      score += load.rooms * roomPenalty;
+      score += (load.upload + load.download) / (1024f * 1024f) * speedPenalty;
+    }
+    return score;
+  }
+
+
+  public static class Relay {
+    public final String host;
+    public final int port;
+    /** Last received state, {@code null} if never reached. */
+    public ServerState state;
+    /** Whether the last probe succeeded. */
+    public boolean reachable;
+    /** Smoothed round-trip time in ms, {@code -1} if never reached. */
+    public float rtt = -1;
+    /** Smoothed loss ratio, from {@code 0} to {@code 1}. */
+    public float loss;
+    public int probes;
+    public float score = Float.POSITIVE_INFINITY;
+
+    public Relay(String host, int port) {
+      this.host = host;
+      this.port = port;
+    }
+
+    protected void reached(ServerState state, float smoothing) {
+      this.state = state;
+      reachable = true;
+      rtt = rtt < 0 ? state.ping : rtt + (state.ping - rtt) * smoothing;
+      // Also takes account of lost samples of the ping
+      loss += (state.loss - loss) * smoothing;
+      probes++;
+    }
+
+    protected void lost(float smoothing) {
+      reachable = false;
+      loss += (1 - loss) * smoothing;
+      probes++;
+    }
+
+    @Override
+    public String toString() {
+      return host.indexOf(':') != -1 ? '[' + host + "]:" + port : host + ':' + port;
+    }
+  }
+}
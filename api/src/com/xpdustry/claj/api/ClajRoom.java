@@ -19,21 +19,38 @@
 
 package com.xpdustry.claj.api;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+
+import arc.util.Log;
+
 import com.xpdustry.claj.common.status.ClajType;
 
 public class ClajRoom<T> {
   public final long roomId;
   public boolean isPublic = true; //Note that for privacy, the server will never notify this.
   public boolean isProtected;
-  /** Only presents if the room is public and the server has retrieved his state. */
-  public T state;
   /** The link to the room. */
   public ClajLink link;
   /** Room implementation type. */
   public ClajType type;
 
+  /**
+   * Only presents if the room is public and the server has retrieved his state. <br>
+   * Still {@code null} while the state is not decoded, so prefer {@link #getState()} or {@link #peekState()}.
+   * Use {@link #setState(Object)} to assign it, else a pending encoded state would overwrite it.
+   * @deprecated kept for compatibility, use the accessors.
+   */
+  @Deprecated
+  public volatile T state;
+  /** Encoded state, kept until decoded by {@link #getState()} or {@link #peekState()}. */
+  protected ByteBuffer rawState;
+  protected ClajProvider provider;
+  protected volatile boolean decoded, decoding;
+
   public ClajRoom(long roomId) {
     this.roomId = roomId;
+    decoded = true;
   }
 
   public ClajRoom(long roomId, boolean isPublic, boolean isProtected, T state, ClajLink link, ClajType type) {
@@ -43,5 +60,73 @@ public class ClajRoom<T> {
     this.state = state;
     this.link = link;
     this.type = type;
+    decoded = true;
+  }
+
+  /**
+   * Creates a room with an encoded state, that will be decoded by the {@code provider} on first access. <br>
+   * The buffer must not be modified after.
+   */
+  public ClajRoom(long roomId, boolean isPublic, boolean isProtected, ByteBuffer rawState, ClajProvider provider,
+                  ClajLink link, ClajType type) {
+    this.roomId = roomId;
+    this.isPublic = isPublic;
+    this.isProtected = isProtected;
+    this.rawState = rawState;
+    this.provider = provider;
+    this.link = link;
+    this.type = type;
+    decoded = rawState == null;
+  }
+
+  /** @return whether the state is decoded, so {@link #peekState()} will return it. */
+  public boolean isDecoded() {
+    return decoded;
+  }
+
+  /** @return the state, decoding it in the current thread if not already done. */
+  public T getState() {
+    if (!decoded) decode();
+    return state;
+  }
+
+  /**
+   * @return the state if already decoded, else {@code null},
+   *         and starts decoding it in the {@link ClajProvider#getExecutor() provider executor}.
+   */
+  public T peekState() {
+    if (decoded) return state;
+    decodeAsync();
+    return null;
+  }
+
+  public void setState(T state) {
+    synchronized (this) {
+      this.state = state;
+      rawState = null;
+      decoded = true;
+    }
+  }
+
+  /** Starts decoding the state in the {@link ClajProvider#getExecutor() provider executor}, if not already done. */
+  public void decodeAsync() {
+    synchronized (this) {
+      if (decoded || decoding) return;
+      decoding = true;
+    }
+    ExecutorService executor = provider.getExecutor();
+    if (executor == null) decode();
+    else executor.execute(this::decode);
+  }
+
+  protected synchronized void decode() {
+    if (decoded) return;
+    try { state = provider.readRoomState(roomId, type, rawState); }
+    catch (Exception e) { Log.err("Failed to decode the state of room " + link, e); }
+    finally {
+      rawState = null;
+      decoded = true;
+      decoding = false;
+    }
   }
 }
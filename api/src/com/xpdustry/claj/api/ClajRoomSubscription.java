@@ -0,0 +1,129 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api;
+
+import arc.func.Cons;
+import arc.struct.Seq;
+
+
+/**
+ * A live view of the public room list of a CLaJ server. <br>
+ * The pinger keeps its connection open and the server pushes room changes,
+ * that are applied in the main thread (using {@link ClajProvider#postTask(Runnable)}).
+ *
+ * @see ClajPingerManager#subscribeRooms
+ */
+public class ClajRoomSubscription<T> {
+  public final String host;
+  public final int port;
+  /** Current public rooms of the server. Must only be used in the main thread. */
+  public final Seq<ClajRoom<T>> rooms = new Seq<>();
+
+  protected final ClajPingerManager manager;
+  protected final ClajPinger pinger;
+  protected Cons<ClajRoomSubscription<T>> changed;
+  protected Cons<Exception> failed;
+  protected boolean listed, closed;
+
+  public ClajRoomSubscription(ClajPingerManager manager, ClajPinger pinger, String host, int port,
+                              Cons<ClajRoomSubscription<T>> changed, Cons<Exception> failed) {
+    this.manager = manager;
+    this.pinger = pinger;
+    this.host = host;
+    this.port = port;
+    this.changed = changed;
+    this.failed = failed;
+  }
+
+  /** Whether the initial room list was received. */
+  public boolean isListed() {
+    return listed;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public ClajPinger pinger() {
+    return pinger;
+  }
+
+  /** Replaces the callbacks, and notify the current list if already received. */
+  public void setCallbacks(Cons<ClajRoomSubscription<T>> changed, Cons<Exception> failed) {
+    this.changed = changed;
+    this.failed = failed;
+    if (listed && !closed && changed != null) changed.get(this);
+  }
+
+  /** Stops receiving room changes and closes the pinger. */
+  public void unsubscribe() {
+    if (closed) return;
+    closed = true;
+    manager.removeSubscription(this);
+    pinger.unsubscribeRoomList();
+    manager.disposePinger(pinger);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected void listed(Seq<ClajRoom<?>> list) {
+    if (closed) return;
+    rooms.set((Seq)list);
+    listed = true;
+    if (changed != null) changed.get(this);
+  }
+
+  /** Rooms of the initial list, received before the whole list when streamed by the server. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected void partial(Seq<ClajRoom<?>> batch) {
+    if (closed || listed) return;
+    rooms.addAll((Seq)batch);
+    if (changed != null) changed.get(this);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void updated(Seq<ClajRoom<?>> updated, long[] removed) {
+    if (closed) return;
+    for (long roomId : removed) {
+      int index = indexOf(roomId);
+      if (index != -1) rooms.remove(index);
+    }
+    for (ClajRoom<?> room : updated) {
+      int index = indexOf(room.roomId);
+      if (index == -1) rooms.add((ClajRoom<T>)room);
+      else rooms.set(index, (ClajRoom<T>)room);
+    }
+    if (listed && changed != null) changed.get(this);
+  }
+
+  protected void failed(Exception e) {
+    if (closed) return;
+    closed = true;
+    manager.removeSubscription(this);
+    manager.disposePinger(pinger);
+    if (failed != null) failed.get(e);
+  }
+
+  public int indexOf(long roomId) {
+    for (int i=0; i<rooms.size; i++) {
+      if (rooms.get(i).roomId == roomId) return i;
+    }
+    return -1;
+  }
+}
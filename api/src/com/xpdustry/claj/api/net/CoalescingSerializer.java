@@ -0,0 +1,95 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api.net;
+
+import java.nio.ByteBuffer;
+
+import arc.net.NetSerializer;
+
+
+/**
+ * Serializer allowing to write many already framed packets in one {@code sendTCP} call. <br>
+ * Other objects are given to the wrapped serializer.
+ * <p>
+ * The TCP connection reserves the length of the object before writing it, and writes it after.
+ * A {@link Batch} is written from this reserved slot, with the length of its first frame,
+ * so the other side will read the frames as normal packets.
+ * The length written later by the connection is only skipped for this exact slot.
+ */
+public class CoalescingSerializer implements NetSerializer {
+  public final NetSerializer serializer;
+  /** Buffer and position of the length slot already written by a batch. Guarded by the TCP write lock. */
+  private ByteBuffer framed;
+  private int framedAt = -1;
+
+  public CoalescingSerializer(NetSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  @Override
+  public void write(ByteBuffer buffer, Object object) {
+    if (object instanceof Batch batch) {
+      int slot = buffer.position() - serializer.getLengthLength();
+      buffer.position(slot);
+      // The batch starts with the length of its first frame, which takes the reserved slot
+      try { buffer.put(batch.buffer); }
+      catch (RuntimeException e) {
+        buffer.position(slot + serializer.getLengthLength());
+        throw e;
+      }
+      framed = buffer;
+      framedAt = slot;
+    } else serializer.write(buffer, object);
+  }
+
+  @Override
+  public Object read(ByteBuffer buffer) {
+    return serializer.read(buffer);
+  }
+
+  @Override
+  public int getLengthLength() {
+    return serializer.getLengthLength();
+  }
+
+  @Override
+  public void writeLength(ByteBuffer buffer, int length) {
+    if (buffer == framed && buffer.position() == framedAt) {
+      framed = null;
+      framedAt = -1;
+      return;
+    }
+    serializer.writeLength(buffer, length);
+  }
+
+  @Override
+  public int readLength(ByteBuffer buffer) {
+    return serializer.readLength(buffer);
+  }
+
+
+  /**
+   * Framed packets, each one prefixed by its length. The buffer must be ready to be read. <br>
+   * The batch takes exactly {@code buffer.remaining()} bytes in the write buffer.
+   */
+  public static class Batch {
+    public ByteBuffer buffer;
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api.net;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import arc.util.Log;
+
+import com.xpdustry.claj.common.net.PacketQueue;
+import com.xpdustry.claj.common.packets.Packet;
+
+
+/**
+ * Small pool of threads decoding packets, partitioned by a key, such as a connection id. <br>
+ * Packets with the same key are decoded by the same thread, so they stay ordered,
+ * and are then added to a {@link PacketQueue} to be delivered in order.
+ * <p>
+ * Each proxy owns its workers, and must {@link #shutdown()} them when stopped.
+ */
+public class DecodeWorkers {
+  /** Number of decoding threads of each proxy. {@code 0} disables the parallel decoding. */
+  public static int workers = 2;
+
+  protected final ExecutorService[] executors;
+
+  public DecodeWorkers(String name) {
+    executors = new ExecutorService[Math.max(1, workers)];
+    for (int i=0; i<executors.length; i++) {
+      String thread = name + " " + i;
+      executors[i] = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, thread);
+        t.setDaemon(true);
+        return t;
+      });
+    }
+  }
+
+  public static boolean enabled() {
+    return workers > 0;
+  }
+
+  /** Decodes the packet, using {@link Packet#handled()}, on the thread of the key, then adds it to the queue. */
+  public void decode(int key, Packet packet, PacketQueue<Object> delivery) {
+    execute(executors[Math.floorMod(key, executors.length)], () -> {
+      try { packet.handled(); }
+      catch (Throwable e) {
+        Log.err("Failed to decode packet " + packet.getClass().getSimpleName(), e);
+        return;
+      }
+      deliver(packet, delivery);
+    });
+  }
+
+  /**
+   * Adds the packet to the queue once the packets given before are decoded, whatever their key. <br>
+   * Used for events concerning all keys, such as a disconnection.
+   */
+  public void barrier(Packet packet, PacketQueue<Object> delivery) {
+    AtomicInteger remaining = new AtomicInteger(executors.length);
+    for (ExecutorService executor : executors) {
+      execute(executor, () -> {
+        if (remaining.decrementAndGet() == 0) deliver(packet, delivery);
+      });
+    }
+  }
+
+  /** Stops the threads. Packets not decoded yet are discarded. */
+  public void shutdown() {
+    for (ExecutorService executor : executors) executor.shutdownNow();
+  }
+
+  protected void execute(ExecutorService executor, Runnable task) {
+    try { executor.execute(task); }
+    catch (RejectedExecutionException ignored) {} // shut down, the proxy is stopping
+  }
+
+  protected void deliver(Packet packet, PacketQueue<Object> delivery) {
+    if (!delivery.add(null, packet)) Log.warn("Decoded packets queue full, packet dropped.");
+  }
+}
@@ -0,0 +1,285 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.api.net;
+
+import java.net.*;
+import java.security.Security;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import arc.func.Cons;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+import arc.util.Time;
+
+
+/**
+ * Resolves and caches host names, so relays are not resolved again at each connection or ping. <br>
+ * Lookups are made in parallel on a dedicated executor, and concurrent lookups of the same host are merged.
+ * <p>
+ * The JDK doesn't expose the TTL of DNS records, so entries are kept for the JVM address cache policy
+ * ({@code networkaddress.cache.ttl} and {@code networkaddress.cache.negative.ttl}). <br>
+ * When a host has both IPv4 and IPv6 addresses, both are kept and the first one given by the system is returned,
+ * unless {@link #preferIPv6} is set. If connecting to it fails, {@link #fallback(String, InetAddress)} switches
+ * the entry to the other family, so the next connections go directly to the address that works
+ * (a sequential happy eyeballs, RFC 8305). Once connected, {@link #confirm(String, InetAddress)} marks the address
+ * as working, for callers that cannot retry by themselves. No connection is ever opened by the resolver itself.
+ */
+public class HostResolver {
+  /** Shared resolver, used by {@link ProxyClient}, the pingers and the pinger engine. */
+  public static final HostResolver global = new HostResolver();
+
+  /** Lifetime of a resolved entry, in ms. {@code -1} to cache forever. */
+  public static int ttl = securityTtl("networkaddress.cache.ttl", 30);
+  /** Lifetime of a failed lookup, in ms. {@code -1} to cache forever. */
+  public static int negativeTtl = securityTtl("networkaddress.cache.negative.ttl", 10);
+  /** Whether to prefer the IPv6 address when a host has both. Else the first address returned by the system is used. */
+  public static boolean preferIPv6 = false;
+
+  protected final ObjectMap<String, Entry> cache = new ObjectMap<>();
+  protected ExecutorService executor;
+
+  /** @return the address, waiting for the lookup if needed. */
+  public InetAddress resolve(String host) throws UnknownHostException {
+    Entry entry;
+    boolean created;
+    synchronized (cache) {
+      entry = cache.get(host);
+      created = entry == null || entry.expired();
+      if (created) cache.put(host, entry = new Entry(host));
+    }
+    // Lookup in the current thread, as it have to wait for it anyway
+    if (created) entry.lookup();
+    return entry.await();
+  }
+
+  /**
+   * Resolves the host in the executor, or calls {@code success} immediately if already cached. <br>
+   * Note that callbacks are called in the resolver thread.
+   */
+  public void resolve(String host, Cons<InetAddress> success, Cons<Exception> failed) {
+    Entry entry;
+    boolean created;
+    synchronized (cache) {
+      entry = cache.get(host);
+      created = entry == null || entry.expired();
+      if (created) cache.put(host, entry = new Entry(host));
+    }
+    entry.then(success, failed);
+    if (created) {
+      Entry e = entry;
+      executor().execute(e::lookup);
+    }
+  }
+
+  /** Starts resolving the host, if not already cached. */
+  public void prefetch(String host) {
+    resolve(host, null, null);
+  }
+
+  /** @return the cached address, or {@code null} if not resolved or expired. */
+  public InetAddress cached(String host) {
+    Entry entry;
+    synchronized (cache) { entry = cache.get(host); }
+    return entry == null || entry.expired() ? null : entry.address;
+  }
+
+  /**
+   * Must be called when connecting to {@code address}, previously returned for {@code host}, failed. <br>
+   * If the host also have an address of the other family, the entry switches to it and it is returned,
+   * so the caller can retry once. Else {@code null} is returned.
+   */
+  public InetAddress fallback(String host, InetAddress address) {
+    Entry entry;
+    synchronized (cache) { entry = cache.get(host); }
+    return entry == null ? null : entry.fallback(address);
+  }
+
+  /** Must be called when connecting to {@code address}, previously returned for {@code host}, succeeded. */
+  public void confirm(String host, InetAddress address) {
+    Entry entry;
+    synchronized (cache) { entry = cache.get(host); }
+    if (entry != null) entry.confirm(address);
+  }
+
+  /**
+   * @return whether the cached address of {@code host} can be used without a fallback,
+   *         because a connection to it succeeded or the host has no address of the other family.
+   */
+  public boolean confirmed(String host) {
+    Entry entry;
+    synchronized (cache) { entry = cache.get(host); }
+    return entry != null && !entry.expired() && entry.confirmed();
+  }
+
+  public void invalidate(String host) {
+    synchronized (cache) { cache.remove(host); }
+  }
+
+  public void clear() {
+    synchronized (cache) { cache.clear(); }
+  }
+
+  protected synchronized ExecutorService executor() {
+    if (executor == null) {
+      executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "CLaJ Resolver");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  /** @return the security property in ms, or {@code def} seconds if not defined or invalid. */
+  protected static int securityTtl(String property, int def) {
+    int seconds = def;
+    try {
+      String value = Security.getProperty(property);
+      if (value != null) seconds = Integer.parseInt(value.trim());
+    } catch (Exception ignored) {}
+    return seconds < 0 ? -1 : seconds * 1000;
+  }
+
+
+  /** A cached lookup. Fields are guarded by the entry itself. */
+  protected class Entry {
+    final String host;
+    InetAddress address, v4, v6;
+    Exception error;
+    boolean confirmed;
+    long expire;
+    boolean done;
+    Seq<Cons<InetAddress>> successes;
+    Seq<Cons<Exception>> failures;
+
+    Entry(String host) {
+      this.host = host;
+    }
+
+    synchronized boolean expired() {
+      return done && expire != -1 && Time.millis() >= expire;
+    }
+
+    void lookup() {
+      InetAddress result = null;
+      Exception failure = null;
+      try {
+        InetAddress[] all = InetAddress.getAllByName(host);
+        InetAddress v4 = null, v6 = null;
+        for (InetAddress address : all) {
+          if (v4 == null && address instanceof Inet4Address) v4 = address;
+          else if (v6 == null && address instanceof Inet6Address) v6 = address;
+        }
+        synchronized (this) {
+          this.v4 = v4;
+          this.v6 = v6;
+        }
+        result = preferIPv6 && v6 != null ? v6 : all[0];
+      } catch (Exception e) {
+        // Also catch runtime ones (e.g. SecurityException), else waiters would never be released
+        failure = e;
+      }
+
+      complete(result, failure);
+    }
+
+    synchronized void confirm(InetAddress connected) {
+      if (done && connected.equals(address)) confirmed = true;
+    }
+
+    synchronized boolean confirmed() {
+      return done && error == null && (confirmed || v4 == null || v6 == null);
+    }
+
+    synchronized InetAddress fallback(InetAddress failed) {
+      if (!done || error != null || !failed.equals(address)) return null;
+      InetAddress other = failed instanceof Inet6Address ? v4 : v6;
+      if (other != null) {
+        address = other;
+        confirmed = false;
+      }
+      return other;
+    }
+
+    void complete(InetAddress result, Exception failure) {
+      Seq<Cons<InetAddress>> successes;
+      Seq<Cons<Exception>> failures;
+      synchronized (this) {
+        address = result;
+        error = failure;
+        int lifetime = failure == null ? ttl : negativeTtl;
+        expire = lifetime < 0 ? -1 : Time.millis() + lifetime;
+        done = true;
+        successes = this.successes;
+        failures = this.failures;
+        this.successes = null;
+        this.failures = null;
+        notifyAll();
+      }
+
+      if (failure == null) {
+        if (successes != null) successes.each(c -> c.get(result));
+      } else {
+        if (failures != null) failures.each(c -> c.get(failure));
+      }
+    }
+
+    synchronized InetAddress await() throws UnknownHostException {
+      while (!done) {
+        try { wait(); }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new UnknownHostException(host + ": interrupted");
+        }
+      }
+      if (error instanceof UnknownHostException) throw (UnknownHostException)error;
+      if (error != null) {
+        UnknownHostException e = new UnknownHostException(host + ": " + error);
+        e.initCause(error);
+        throw e;
+      }
+      return address;
+    }
+
+    void then(Cons<InetAddress> success, Cons<Exception> failed) {
+      InetAddress result;
+      Exception failure;
+      synchronized (this) {
+        if (!done) {
+          if (success != null) {
+            if (successes == null) successes = new Seq<>();
+            successes.add(success);
+          }
+          if (failed != null) {
+            if (failures == null) failures = new Seq<>();
+            failures.add(failed);
+          }
+          return;
+        }
+        result = address;
+        failure = error;
+      }
+      if (failure == null) {
+        if (success != null) success.get(result);
+      } else if (failed != null) failed.get(failure);
+    }
+  }
+}
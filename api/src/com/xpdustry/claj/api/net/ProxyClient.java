@@ -21,13 +21,15 @@ package com.xpdustry.claj.api.net;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.Selector;
 
-import arc.func.Cons;
 import arc.net.*;
 import arc.struct.IntMap;
 import arc.util.Log;
 import arc.util.Reflect;
+import arc.util.Time;
 
 import com.xpdustry.claj.common.net.*;
 import com.xpdustry.claj.common.util.Structs;
@@ -40,9 +42,29 @@ import com.xpdustry.claj.common.util.Structs;
  * - Notifying methods must be called ({@link #conConnected}, {@link #conDisconnected}, {@link #conReceived} and
  * {@link #conIdle}). <br>
  * - Packet making methods must be defined ({@link #makeWrapPacket} and {@link #makeClosePacket}).
+ * <p>
+ * As every virtual connection writes to the same TCP connection, the write buffer should be sized accordingly
+ * at construction. When it is full, TCP packets of virtual connections are queued,
+ * each connection having a fair share of {@link #maxQueuedBytes}, and sent in round-robin when there is room.
+ * A connection exceeding its share is closed, instead of the whole proxy on a buffer overflow.
+ * <p>
+ * When {@link #setCoalescing coalescing}, TCP packets of virtual connections are accumulated and written at once
+ * by {@link #flush()}, which should be called at the end of each tick.
+ * They are also flushed when reaching {@link #coalesceThreshold} bytes,
+ * and by the update loop after {@link #maxCoalesceDelay} ms, as a fallback.
  */
 public abstract class ProxyClient extends Client {
   public static int defaultTimeout = 5000; //ms
+  /** Maximum serialized size of a packet of a virtual connection, sizing the queuing and coalescing buffers. */
+  public static int maxPacketSize = 32768;
+  /** Bytes that can be queued for all virtual connections, fairly shared between them. */
+  public static int maxQueuedBytes = 4 << 20;
+  /** Minimum share of {@link #maxQueuedBytes} given to a virtual connection. */
+  public static int minQueuedShare = 64 << 10;
+  /** Bytes of coalesced packets that triggers a flush. */
+  public static int coalesceThreshold = 8192;
+  /** Time after which the update loop flushes coalesced packets, if {@link #flush()} was not called. */
+  public static int maxCoalesceDelay = 50; //ms
 
   // Redefine some internal states btw
   protected int connectTimeout;
@@ -58,20 +80,54 @@ public abstract class ProxyClient extends Client {
   protected volatile boolean shutdown = true, starting, ignoreExceptions, connecting;
   protected ClientReceiver receiver;
 
-  public ProxyClient(int writeBufferSize, int objectBufferSize, NetSerializer serialization, NetListener conListener,
-                     Cons<Runnable> taskPoster) {
-    super(writeBufferSize, objectBufferSize, serialization);
+  // Outbound state, guarded by outboundLock
+  protected final Object outboundLock = new Object();
+  protected final NetSerializer serializer;
+  protected final int objectBufferSize;
+  /** Serialization buffer of packets that must be queued. */
+  protected final ByteBuffer overflowBuffer;
+  protected final int writeBufferCapacity;
+  protected int queuedBytes, drainCursor;
+  protected int writeBufferHighWater, queuedHighWater;
+  /** Framed packets waiting for {@link #flush()}, {@code null} when not coalescing. */
+  protected ByteBuffer coalesced;
+  protected long lastFlush;
+  protected final CoalescingSerializer.Batch batch = new CoalescingSerializer.Batch();
+  /** Selector of the client, to wake up the update thread. */
+  protected final Selector selector;
+
+  /**
+   * Packets are received in the proxy thread, as virtual connections are managed there. <br>
+   * The {@code conListener} must delegate them to the main thread itself, if needed.
+   */
+  public ProxyClient(int writeBufferSize, int objectBufferSize, NetSerializer serialization, NetListener conListener) {
+    super(writeBufferSize, objectBufferSize, new CoalescingSerializer(serialization));
     this.conListener = conListener;
-    receiver = new ClientReceiver(this, taskPoster);
+    this.serializer = serialization;
+    this.objectBufferSize = objectBufferSize;
+    writeBufferCapacity = writeBufferSize;
+    // A packet that fits in the write buffer will fit here
+    overflowBuffer = ByteBuffer.allocate(Math.min(writeBufferSize, maxPacketSize));
+    receiver = new ClientReceiver(this);
+    selector = Reflect.get(Client.class, this, "selector");
   }
 
   /**
    * Connect used {@link #defaultTimeout} and same {@code port} for TCP and UDP. <br>
    * This also ensures that the client is running before connection.
+   * The host is resolved using the {@link HostResolver#global global resolver},
+   * and the other address family is tried once if the connection fails.
    */
   public void connect(String host, int port) throws IOException {
     if (!isRunning()) start();
-    connect(defaultTimeout, host, port, port);
+    InetAddress address = HostResolver.global.resolve(host);
+    try { connect(defaultTimeout, address, port, port); }
+    catch (IOException e) {
+      address = HostResolver.global.fallback(host, address);
+      if (address == null) throw e;
+      connect(defaultTimeout, address, port, port);
+    }
+    HostResolver.global.confirm(host, address);
   }
 
   @Override
@@ -85,6 +141,14 @@ public abstract class ProxyClient extends Client {
     finally { connecting = false; }
   }
 
+  /** Wakes up the update thread, so {@link #runPending()} is called without waiting for network events. */
+  public void wakeup() {
+    selector.wakeup();
+  }
+
+  /** Called by the update thread after each update, to handle work given by other threads. */
+  protected void runPending() {}
+
   /**
    * Ignore exceptions when possible, and maintain idle state of virtual connections. <br>
    * This also tries to ignore errors, to avoid stopping the proxy every time a virtual connection is doing a mess.
@@ -96,6 +160,9 @@ public abstract class ProxyClient extends Client {
       while(!shutdown) {
         try {
           update(250);
+          runPending();
+          drainQueued();
+          if (Time.timeSinceMillis(lastFlush) >= maxCoalesceDelay) flush();
           // update idle
           for (VirtualConnection c : connections) {
             if (c.isIdle()) c.notifyIdle0();
@@ -175,9 +242,15 @@ public abstract class ProxyClient extends Client {
   protected void removeConnection(VirtualConnection con) {
     connectionsMap.remove(con.getID());
     connections = Structs.remove(connections, con);
+    discardQueued(con);
   }
 
   protected void clearConnections() {
+    synchronized (outboundLock) {
+      // Nobody will receive them now
+      if (coalesced != null) coalesced.clear();
+    }
+    for (VirtualConnection c : connections) discardQueued(c);
     connectionsMap.clear();
     connections = new VirtualConnection[0];
   }
@@ -193,7 +266,24 @@ public abstract class ProxyClient extends Client {
   public int send(VirtualConnection con, Object object, boolean tcp) {
     if(object == null) throw new IllegalArgumentException("object cannot be null.");
     Object p = makeConWrapPacket(con.getID(), object, tcp);
-    return tcp ? sendTCP(p) : sendUDP(p);
+    int sent;
+    try {
+      if (!tcp) return sendUDP(p);
+      synchronized (outboundLock) {
+        drainQueued();
+        // Keep the order of the connection if some of its packets are already queued
+        if (!con.pending.isEmpty() || !ensureHeadroom(coalescedBytes() + objectBufferSize)) sent = enqueue(con, p);
+        else if (coalesced != null) return coalesce(p);
+        else return sendTCP(p);
+      }
+    } finally { freePacket(p); }
+
+    if (sent < 0) {
+      Log.warn("@: Outbound queue of @ exceeded its share, closing it.", this, con);
+      close(con, DcReason.error);
+      return 0;
+    }
+    return sent;
   }
 
   /**
@@ -201,7 +291,9 @@ public abstract class ProxyClient extends Client {
    * Indeed, this will not trigger callbacks.
    */
   protected void close(int conId, DcReason reason) {
-    sendTCP(makeConClosePacket(conId, reason));
+    Object p = makeConClosePacket(conId, reason);
+    try { sendTCP(p); }
+    finally { freePacket(p); }
   }
 
   public void close(VirtualConnection con, DcReason reason) {
@@ -217,6 +309,186 @@ public abstract class ProxyClient extends Client {
     removeConnection(con);
   }
 
+  /** Flushes coalesced packets before, to keep the order. */
+  @Override
+  public int sendTCP(Object object) {
+    synchronized (outboundLock) {
+      flush();
+      return super.sendTCP(object);
+    }
+  }
+
+  // end region
+  // region outbound
+
+  public boolean isCoalescing() { return coalesced != null; }
+
+  /** Enables or disables the coalescing of TCP packets of virtual connections. Pending packets are flushed. */
+  public void setCoalescing(boolean coalescing) {
+    synchronized (outboundLock) {
+      if (coalescing == isCoalescing()) return;
+      flush();
+      // Always leave room for a packet that fits in the write buffer
+      coalesced = coalescing ? ByteBuffer.allocate(coalesceThreshold + overflowBuffer.capacity()) : null;
+    }
+  }
+
+  /** @return the number of bytes waiting for {@link #flush()}. */
+  public int coalescedBytes() {
+    ByteBuffer buffer = coalesced;
+    return buffer == null ? 0 : buffer.position();
+  }
+
+  /**
+   * Writes coalesced packets to the TCP connection. Does nothing if not coalescing or nothing is pending. <br>
+   * If the write buffer doesn't have room for all of them, only the whole frames that fit are written,
+   * the rest is kept for the next flush.
+   */
+  public void flush() {
+    synchronized (outboundLock) {
+      lastFlush = Time.millis();
+      ByteBuffer buffer = coalesced;
+      if (buffer == null || buffer.position() == 0) return;
+      int size = buffer.position();
+      int end = ensureHeadroom(size) ? size : fittingFrames(buffer, size, writeBufferCapacity - getTcpWriteBufferSize());
+      if (end == 0) return;
+      buffer.flip();
+      batch.buffer = buffer.duplicate();
+      batch.buffer.limit(end);
+      try { super.sendTCP(batch); }
+      finally {
+        batch.buffer = null;
+        buffer.position(end);
+        buffer.compact();
+      }
+    }
+  }
+
+  /** @return the end of the last whole frame of {@code buffer} fitting in {@code room} bytes. */
+  protected int fittingFrames(ByteBuffer buffer, int size, int room) {
+    int end = 0, lengthLength = serializer.getLengthLength(), position = buffer.position();
+    while (end < size) {
+      buffer.position(end);
+      int next = end + lengthLength + serializer.readLength(buffer);
+      if (next > room) break;
+      end = next;
+    }
+    buffer.position(position);
+    return end;
+  }
+
+  /**
+   * Serializes and frames the packet of a virtual connection, waiting for {@link #flush()}.
+   * @return the number of bytes coalesced.
+   */
+  protected int coalesce(Object packet) {
+    ByteBuffer buffer = coalesced;
+    // The caller ensured the write buffer has room for pending frames, so this flushes all of them
+    if (buffer.remaining() < overflowBuffer.capacity()) flush();
+    int start = buffer.position(), lengthLength = serializer.getLengthLength();
+    try {
+      buffer.position(start + lengthLength);
+      serializer.write(buffer, packet);
+    } catch (Throwable e) {
+      buffer.position(start);
+      throw new ArcNetException("Error serializing object of type: " + packet.getClass().getName(), e);
+    }
+    int end = buffer.position();
+    buffer.position(start);
+    serializer.writeLength(buffer, end - start - lengthLength);
+    buffer.position(end);
+    if (end >= coalesceThreshold) flush();
+    return end - start;
+  }
+
+  /** @return the capacity of the TCP write buffer. */
+  public int getWriteBufferCapacity() { return writeBufferCapacity; }
+  /** @return the highest number of bytes seen in the TCP write buffer. */
+  public int getWriteBufferHighWater() { return writeBufferHighWater; }
+  /** @return the number of bytes queued for all virtual connections. */
+  public int getQueuedBytes() { return queuedBytes; }
+  /** @return the highest number of bytes queued for all virtual connections. */
+  public int getQueuedHighWater() { return queuedHighWater; }
+
+  public void resetHighWaterMarks() {
+    synchronized (outboundLock) {
+      writeBufferHighWater = queuedHighWater = 0;
+      for (VirtualConnection c : connections) c.pendingHighWater = c.pendingBytes;
+    }
+  }
+
+  /** @return the share of {@link #maxQueuedBytes} that a virtual connection can use. */
+  public int queuedShare() {
+    return Math.max(minQueuedShare, maxQueuedBytes / Math.max(1, connections.length));
+  }
+
+  /** @return whether the TCP write buffer has {@code needed} free bytes. */
+  protected boolean ensureHeadroom(int needed) {
+    int used = getTcpWriteBufferSize();
+    if (used > writeBufferHighWater) writeBufferHighWater = used;
+    return writeBufferCapacity - used >= needed;
+  }
+
+  /**
+   * Serializes and queues the packet of a virtual connection.
+   * @return the number of bytes queued, or {@code -1} if the connection exceeded its share.
+   */
+  protected int enqueue(VirtualConnection con, Object packet) {
+    ByteBuffer buffer = overflowBuffer;
+    buffer.clear();
+    try { serializer.write(buffer, packet); }
+    catch (Throwable e) {
+      throw new ArcNetException("Error serializing object of type: " + packet.getClass().getName(), e);
+    }
+    int size = buffer.position();
+    if (con.pendingBytes + size > queuedShare()) return -1;
+
+    byte[] data = new byte[size];
+    buffer.flip();
+    buffer.get(data);
+    con.pending.addLast(data);
+    con.pendingBytes += size;
+    queuedBytes += size;
+    if (con.pendingBytes > con.pendingHighWater) con.pendingHighWater = con.pendingBytes;
+    if (queuedBytes > queuedHighWater) queuedHighWater = queuedBytes;
+    return size;
+  }
+
+  /** Sends queued packets in round-robin between virtual connections, while the write buffer has room. */
+  protected void drainQueued() {
+    synchronized (outboundLock) {
+      VirtualConnection[] cons = connections;
+      int empty = 0;
+      while (queuedBytes > 0 && empty < cons.length) {
+        if (drainCursor >= cons.length) drainCursor = 0;
+        VirtualConnection con = cons[drainCursor];
+        if (con.pending.isEmpty()) {
+          empty++;
+          drainCursor++;
+          continue;
+        }
+        byte[] data = con.pending.first();
+        // Also count the length header
+        if (!ensureHeadroom(data.length + 4)) return;
+        con.pending.removeFirst();
+        con.pendingBytes -= data.length;
+        queuedBytes -= data.length;
+        // The serializer writes buffers as is
+        sendTCP(ByteBuffer.wrap(data));
+        empty = 0;
+        drainCursor++;
+      }
+    }
+  }
+
+  protected void discardQueued(VirtualConnection con) {
+    synchronized (outboundLock) {
+      queuedBytes -= con.pendingBytes;
+      con.pendingBytes = 0;
+      con.pending.clear();
+    }
+  }
+
   // end region
   // region notifier
 
@@ -254,6 +526,8 @@ public abstract class ProxyClient extends Client {
 
   protected abstract Object makeConWrapPacket(int conId, Object object, boolean tcp);
   protected abstract Object makeConClosePacket(int conId, DcReason reason);
+  /** Called once a packet made by {@link #makeConWrapPacket} or {@link #makeConClosePacket} has been sent. */
+  protected void freePacket(Object packet) {}
 
   // end region
 }
@@ -26,6 +26,7 @@ import arc.net.Connection;
 import arc.net.DcReason;
 import arc.net.EndPoint;
 import arc.net.NetListener;
+import arc.struct.Queue;
 
 import com.xpdustry.claj.common.net.DispatchListener;
 import com.xpdustry.claj.common.util.AddressUtil;
@@ -51,6 +52,9 @@ public class VirtualConnection extends Connection {
    */
   protected final InetSocketAddress remoteAddress;
   protected String name;
+  /** Serialized TCP packets waiting for room in the proxy write buffer, guarded by the proxy. */
+  protected final Queue<byte[]> pending = new Queue<>();
+  protected int pendingBytes, pendingHighWater;
 
   /**
    * A virtual connection is always connected until we closing it. <br>
@@ -122,7 +126,11 @@ public class VirtualConnection extends Connection {
   @Override
   public void setName(String name) { this.name = name; } // never used
   @Override
-  public int getTcpWriteBufferSize() { return proxy.getTcpWriteBufferSize(); } // never used
+  public int getTcpWriteBufferSize() { return proxy.getTcpWriteBufferSize() + pendingBytes; }
+  /** @return the number of bytes queued by the proxy for this connection. */
+  public int getPendingBytes() { return pendingBytes; }
+  /** @return the highest number of bytes queued by the proxy for this connection. */
+  public int getPendingHighWater() { return pendingHighWater; }
   /** The server will notify if the client is idling. */
   @Override
   public boolean isIdle() { return isIdling; }
@@ -23,32 +23,189 @@ import arc.Core;
 import arc.func.Cons;
 import arc.struct.ArrayMap;
 import arc.struct.ObjectMap;
+import arc.struct.Seq;
 import arc.util.Http;
+import arc.util.Http.HttpRequest;
+import arc.util.Http.HttpStatus;
+import arc.util.Http.HttpStatusException;
+import arc.util.Structs;
+import arc.util.Time;
 import arc.util.serialization.Jval;
 
+import com.xpdustry.claj.api.net.HostResolver;
+import com.xpdustry.claj.client.dialogs.CreateRoomDialog;
+
 
 public class ClajServers {
   public static final String publicServersLink =
       "https://github.com/xpdustry/claj/blob/main/public-servers.hjson?raw=true";
   public static final ArrayMap<String, String> online = new ArrayMap<>(),
                                                custom = new ArrayMap<>();
+  /** Last known probe results, by {@code address:port}. Persisted in settings. */
+  public static final ObjectMap<String, Probe> probes = new ObjectMap<>();
+  /** The public list, without custom servers, as last downloaded. */
+  protected static final ArrayMap<String, String> cached = new ArrayMap<>();
+  protected static boolean cacheLoaded, probesLoaded;
+
+  /** Same as {@link #refreshOnline(Cons, Cons)}, but without knowing if the list changed. */
+  public static void refreshOnline(Runnable done, Cons<Throwable> failed) {
+    refreshOnline(changed -> done.run(), failed);
+  }
 
-  public static synchronized void refreshOnline(Runnable done, Cons<Throwable> failed) {
+  /**
+   * Revalidates the cached public list using {@code ETag} and {@code Last-Modified}, and only downloads it
+   * if changed. {@link #online} is filled from the cache while waiting.
+   * @param done called with {@code true} if the list changed since the last call.
+   */
+  public static synchronized void refreshOnline(Cons<Boolean> done, Cons<Throwable> failed) {
+    loadCached();
     // Public list
-    Http.get(publicServersLink, result -> {
+    HttpRequest request = Http.get(publicServersLink);
+    String etag = Core.settings.getString("claj-online-etag", null);
+    String modified = Core.settings.getString("claj-online-modified", null);
+    if (!cached.isEmpty()) {
+      if (etag != null) request.header("If-None-Match", etag);
+      if (modified != null) request.header("If-Modified-Since", modified);
+    }
+
+    request.error(t -> {
+      if (t instanceof HttpStatusException e && e.status == HttpStatus.NOT_MODIFIED) notModified(done);
+      else Core.app.post(() -> failed.get(t));
+    }).submit(result -> {
+      if (result.getStatus() == HttpStatus.NOT_MODIFIED) {
+        notModified(done);
+        return;
+      }
       Jval.JsonMap list = Jval.read(result.getResultAsString()).asObject();
-      online.clear();
+      ArrayMap<String, String> fetched = new ArrayMap<>();
       for (ObjectMap.Entry<String, Jval> e : list)
-        online.put(e.key, e.value.asString());
-      online.putAll(custom);
-      Core.app.post(done);
-    }, t -> Core.app.post(() -> failed.get(t)));
+        fetched.put(e.key, e.value.asString());
+      String newEtag = result.getHeader("ETag"), newModified = result.getHeader("Last-Modified");
+
+      Core.app.post(() -> {
+        boolean changed = !sameServers(cached, fetched);
+        cached.clear();
+        cached.putAll(fetched);
+        saveCached(newEtag, newModified);
+        fillOnline();
+        prefetch();
+        done.get(changed);
+      });
+    });
     /*
     online.put("Chaotic Neutral", "n3.xpdustry.com:7026");
     done.run();
     */
   }
 
+  protected static void notModified(Cons<Boolean> done) {
+    Core.app.post(() -> {
+      fillOnline();
+      prefetch();
+      done.get(false);
+    });
+  }
+
+  /**
+   * Loads the public list saved by the last refresh into {@link #online}, if not already done.
+   * @return whether a cached list exists.
+   */
+  @SuppressWarnings("unchecked")
+  public static boolean loadCached() {
+    if (!cacheLoaded) {
+      cacheLoaded = true;
+      cached.putAll(Core.settings.getJson("claj-online-servers", ArrayMap.class, String.class, ArrayMap::new));
+      loadProbes();
+      if (online.isEmpty()) fillOnline();
+    }
+    return !cached.isEmpty();
+  }
+
+  protected static void saveCached(String etag, String modified) {
+    Core.settings.putJson("claj-online-servers", String.class, cached);
+    if (etag != null) Core.settings.put("claj-online-etag", etag);
+    else Core.settings.remove("claj-online-etag");
+    if (modified != null) Core.settings.put("claj-online-modified", modified);
+    else Core.settings.remove("claj-online-modified");
+  }
+
+  protected static void fillOnline() {
+    online.clear();
+    online.putAll(cached);
+    online.putAll(custom);
+  }
+
+  protected static boolean sameServers(ArrayMap<String, String> a, ArrayMap<String, String> b) {
+    if (a.size != b.size) return false;
+    for (int i=0; i<a.size; i++) {
+      if (!a.getKeyAt(i).equals(b.getKeyAt(i)) || !a.getValueAt(i).equals(b.getValueAt(i))) return false;
+    }
+    return true;
+  }
+
+  /** Starts resolving the online servers, so they are resolved once per TTL, and not at each ping. */
+  public static void prefetch() {
+    CreateRoomDialog.Server parser = new CreateRoomDialog.Server();
+    for (var e : online) {
+      if (parser.set(e.value)) HostResolver.global.prefetch(parser.address);
+    }
+  }
+
+  /**
+   * @return the {@link #online} servers, ordered by the last known latency.
+   *         Unreachable and never probed servers are last, in their original order.
+   */
+  public static Seq<ObjectMap.Entry<String, String>> sortedOnline() {
+    loadProbes();
+    CreateRoomDialog.Server parser = new CreateRoomDialog.Server();
+    Seq<ObjectMap.Entry<String, String>> sorted = new Seq<>(online.size);
+    ObjectMap<String, Integer> pings = new ObjectMap<>(online.size);
+    for (var e : online) {
+      ObjectMap.Entry<String, String> entry = new ObjectMap.Entry<>();
+      entry.key = e.key;
+      entry.value = e.value;
+      sorted.add(entry);
+      Probe probe = parser.set(e.value) ? getProbe(parser.address, parser.port) : null;
+      pings.put(e.value, probe == null || probe.ping < 0 ? Integer.MAX_VALUE : probe.ping);
+    }
+    // Seq#sort is stable
+    return sorted.sort(Structs.comparingInt(e -> pings.get(e.value)));
+  }
+
+  // Probes
+
+  public static Probe getProbe(String address, int port) {
+    loadProbes();
+    return probes.get(address + ':' + port);
+  }
+
+  /** Records the latency of a server, {@code -1} if unreachable. */
+  public static void recordPing(String address, int port, int ping) {
+    loadProbes();
+    Probe probe = probes.get(address + ':' + port, Probe::new);
+    probe.ping = ping;
+    probe.time = Time.millis();
+  }
+
+  public static void recordRooms(String address, int port, int rooms) {
+    loadProbes();
+    Probe probe = probes.get(address + ':' + port, Probe::new);
+    probe.rooms = rooms;
+    probe.time = Time.millis();
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void loadProbes() {
+    if (probesLoaded) return;
+    probesLoaded = true;
+    probes.putAll(Core.settings.getJson("claj-server-probes", ObjectMap.class, Probe.class, ObjectMap::new));
+  }
+
+  public static void saveProbes() {
+    if (!probesLoaded) return;
+    Core.settings.putJson("claj-server-probes", Probe.class, probes);
+  }
+
   @SuppressWarnings("unchecked")
   public static void loadCustom() {
     custom.clear();
@@ -58,4 +215,15 @@ public class ClajServers {
   public static void saveCustom() {
     Core.settings.putJson("claj-custom-servers", String.class, custom);
   }
+
+
+  /** Last known probe result of a server. */
+  public static class Probe {
+    /** Latency in ms, {@code -1} if unreachable or unknown. */
+    public int ping = -1;
+    /** Number of listed rooms, {@code -1} if unknown. */
+    public int rooms = -1;
+    /** When the result was recorded. */
+    public long time;
+  }
 }
@@ -19,10 +19,12 @@
 
 package com.xpdustry.claj.client;
 
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 
 import arc.Core;
+import arc.func.Cons;
 import arc.net.NetListener;
 import arc.net.Server;
 import arc.util.Reflect;
@@ -39,6 +41,7 @@ import mindustry.net.NetworkIO;
 
 import com.xpdustry.claj.api.ClajProvider;
 import com.xpdustry.claj.api.ClajProxy;
+import com.xpdustry.claj.api.net.HostResolver;
 import com.xpdustry.claj.common.packets.ConnectionPacketWrapPacket;
 import com.xpdustry.claj.common.status.*;
 
@@ -89,6 +92,18 @@ public class MindustryClajProvider implements ClajProvider {
     return clajVersion;
   }
 
+  /** Snapshots are sent in bursts each tick, so let them be written at once. */
+  @Override
+  public boolean coalesceWrites() {
+    return true;
+  }
+
+  /** Not exposed in the settings dialog for now, set {@code claj-stripes} manually to use it. */
+  @Override
+  public int uplinkStripes() {
+    return Core.settings.getInt("claj-stripes", 1);
+  }
+
   @Override
   public NetListener getConnectionListener() {
     return mindustryServerDispatcher;
@@ -110,7 +125,10 @@ public class MindustryClajProvider implements ClajProvider {
     Vars.logic.reset();
     Vars.net.reset();
     Vars.netClient.beginConnecting();
-    Vars.net.connect(host, port, () -> {
+    // Avoid resolving the host again, it was already done to validate the join request,
+    // and the cached address is the one the pinger could connect to, after a fallback if needed.
+    InetAddress address = HostResolver.global.cached(host);
+    Vars.net.connect(address == null ? host : address.getHostAddress(), port, () -> {
       if (!Vars.net.client()) return;
       if (success != null) success.run();
       //TODO: Override Connect listener to send it before ConnectPacket?
@@ -118,6 +136,44 @@ public class MindustryClajProvider implements ClajProvider {
     });
   }
 
+  /**
+   * The relay keeps the first packets of a connection that didn't join a room yet,
+   * so the client can connect, and send its connect packet, before its join packet.
+   */
+  @Override
+  public Cons<ByteBuffer> preconnectClient(String host, int port, Runnable success) {
+    // The address family is not proven yet, so wait for the validation to know which one works
+    if (!HostResolver.global.confirmed(host)) return ClajProvider.super.preconnectClient(host, port, success);
+    Vars.logic.reset();
+    Vars.net.reset();
+    Vars.netClient.beginConnecting();
+    // Only used in the main thread
+    boolean[] connected = {false}, done = {false};
+    ByteBuffer[] join = {null};
+
+    InetAddress address = HostResolver.global.cached(host);
+    Vars.net.connect(address == null ? host : address.getHostAddress(), port, () -> {
+      if (!Vars.net.client() || done[0] && join[0] == null) return;
+      connected[0] = true;
+      if (join[0] == null) return; // still validating
+      if (success != null) success.run();
+      Vars.net.send(join[0], true);
+    });
+
+    return joinPacket -> {
+      if (done[0]) return;
+      done[0] = true;
+      if (joinPacket == null) {
+        Vars.netClient.disconnectQuietly();
+        return;
+      }
+      join[0] = joinPacket;
+      if (!connected[0] || !Vars.net.client()) return; // will be sent once connected
+      if (success != null) success.run();
+      Vars.net.send(joinPacket, true);
+    };
+  }
+
   @Override
   public ConnectionPacketWrapPacket.Serializer getPacketWrapperSerializer() {
     return new ConnectionPacketWrapPacket.Serializer() {
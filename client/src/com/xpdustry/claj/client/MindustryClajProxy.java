@@ -62,14 +62,15 @@ public class MindustryClajProxy extends ClajProxy {
     });
   }
 
+  /** Includes the connections of the stripes. */
   public Iterable<NetConnection> getMindustryConnections() {
-    return Structs.generator(getConnections(),
+    return Structs.generator(getAllConnections(),
                              MindustryClajProxy::isMindustryConnection,
                              MindustryClajProxy::toMindustryConnection);
   }
 
   public int getMindustryConnectionsSize() {
-    return Structs.count(getConnections(), MindustryClajProxy::isMindustryConnection);
+    return Structs.count(getAllConnections(), MindustryClajProxy::isMindustryConnection);
   }
 
   public static boolean isMindustryConnection(Connection connection) {
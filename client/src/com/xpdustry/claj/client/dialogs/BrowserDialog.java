@@ -25,7 +25,11 @@ import arc.func.Cons;
 import arc.graphics.Color;
 import arc.input.KeyCode;
 import arc.math.Mathf;
+import arc.scene.ui.Button;
+import arc.scene.ui.Image;
+import arc.scene.ui.Label;
 import arc.scene.ui.TextButton.TextButtonStyle;
+import arc.scene.ui.layout.Cell;
 import arc.scene.ui.layout.Collapser;
 import arc.scene.ui.layout.Scl;
 import arc.scene.ui.layout.Table;
@@ -56,13 +60,14 @@ import com.xpdustry.claj.api.ClajRoom;
 import com.xpdustry.claj.client.ClajServers;
 import com.xpdustry.claj.client.ClajUi;
 import com.xpdustry.claj.client.dialogs.CreateRoomDialog.Server;
+import com.xpdustry.claj.client.util.VirtualGrid;
 
 
 public class BrowserDialog extends BaseDialog {
   public static float MIN_CARD_SIZE = 400f, MAX_CARD_SIZE = 500f, SCREEN_MAX = 0.9f;
   public static int MAX_COLUMNS = 6;
 
-  boolean refreshingList;
+  boolean refreshingList, revalidatingList;
   String serverSearch = "";
   final TextButtonStyle style;
   final Table hosts = new Table();
@@ -86,6 +91,11 @@ public class BrowserDialog extends BaseDialog {
       setup();
       refreshAll();
     });
+    // Room lists are kept up to date by the servers while the dialog is shown
+    hidden(() -> {
+      Claj.get().unsubscribeRooms();
+      ClajServers.saveProbes();
+    });
     onResize(this::rebuild);
 
     // Add the CLaJ browser button bellow Play > Load Save on PC, and after Quit button on mobile
@@ -141,7 +151,7 @@ public class BrowserDialog extends BaseDialog {
     if (refreshingList) return;
 
     servers.clear();
-    for (var e : ClajServers.online) {
+    for (var e : ClajServers.sortedOnline()) {
       // For parsing
       Server temp = new Server();
       temp.name = e.key;
@@ -168,40 +178,57 @@ public class BrowserDialog extends BaseDialog {
   }
 
   public void refreshAll() {
-    if (refreshingList) return; // Avoid to re-trigger a refresh while refreshing
-    refreshingList = true;
+    if (refreshingList || revalidatingList) return; // Avoid to re-trigger a refresh while refreshing
     serverRooms.clear();
     servers.clear();
     refreshing.clear();
     hosts.clear();
     Claj.get().cancelPingers(); // cancel previous pings and listing
 
-    hosts.table(t -> {
-      t.add("@claj.servers.fetching").padRight(3);
-      t.label(() -> Strings.animated(Time.time, 4, 11, ".")).color(Pal.accent);
-    }).center().growX().padTop(5).padBottom(5);
+    // Render the cached list instantly, it will only be rebuilt if the revalidation changed it
+    boolean cached = ClajServers.loadCached();
+    if (cached) {
+      revalidatingList = true;
+      buildServers();
+    } else {
+      refreshingList = true;
+      hosts.table(t -> {
+        t.add("@claj.servers.fetching").padRight(3);
+        t.label(() -> Strings.animated(Time.time, 4, 11, ".")).color(Pal.accent);
+      }).center().growX().padTop(5).padBottom(5);
+    }
 
-    ClajServers.refreshOnline/*test.mockRefreshOnline*/(() -> {
-      refreshingList = false;
+    ClajServers.refreshOnline/*test.mockRefreshOnline*/(changed -> {
+      refreshingList = revalidatingList = false;
+      if (cached && !changed) return;
+      serverRooms.clear();
+      servers.clear();
+      refreshing.clear();
       hosts.clear();
-
-      for (var e : ClajServers.online) {
-        Server server = new Server();
-        server.name = e.key;
-        server.set(e.value);
-
-        Table rooms = new Table().top().left();
-        section(e.key, e.value, rooms, hosts, () -> refreshServer(server, rooms));
-        refreshServer(server, rooms);
-      }
+      Claj.get().cancelPingers();
+      buildServers();
     }, e -> {
-      refreshingList = false;
+      refreshingList = revalidatingList = false;
+      if (cached) return; // keep the cached list
       hosts.clear();
       hosts.add("@claj.servers.check-internet");
       Vars.ui.showException("@claj.servers.fetch-failed", e);
     });
   }
 
+  /** Adds the online servers, ordered by their last known latency, and probes them. */
+  void buildServers() {
+    for (var e : ClajServers.sortedOnline()) {
+      Server server = new Server();
+      server.name = e.key;
+      server.set(e.value);
+
+      Table rooms = new Table().top().left();
+      section(e.key, e.value, rooms, hosts, () -> refreshServer(server, rooms));
+      refreshServer(server, rooms);
+    }
+  }
+
   public void refreshServer(Server server, Table table) {
     if (refreshingList || !refreshing.add(server)) return;
     servers.put(server, table);
@@ -217,10 +244,15 @@ public class BrowserDialog extends BaseDialog {
 
       label.add("@claj.browser.listing").padTop(5).padBottom(5);
       label.label(() -> Strings.animated(Time.time, 4, 11, ".")).pad(5, 3, 5, 0).color(Pal.accent);
+      // Last known latency, while probing
+      ClajServers.Probe last = ClajServers.getProbe(server.address, server.port);
+      if (last != null && last.ping >= 0) ping.add("~" + last.ping + "ms", Color.gray, 0.91f).left();
 
       Claj.get().pingHost/*test.mockPingHost*/(server.address, server.port, s -> {
         server.compatible = s.version == Claj.get().provider.getVersion().majorVersion;
         server.outdated = s.version < Claj.get().provider.getVersion().majorVersion;
+        ClajServers.recordPing(server.address, server.port, s.ping);
+        ping.clear();
         if (server.compatible) {
           ping.image(Icon.ok, Color.green).padRight(7).left();
         } else {
@@ -235,6 +267,7 @@ public class BrowserDialog extends BaseDialog {
         if (server.compatible) listRooms(server, dest, done, error);
         else done.run();
       }, e -> {
+        ClajServers.recordPing(server.address, server.port, -1);
         ping.clear();
         label.clear();
         ping.image(Icon.cancel, Color.red).left();
@@ -245,21 +278,19 @@ public class BrowserDialog extends BaseDialog {
   }
 
   public void listRooms(Server server, Table dest, Runnable done, Cons<Exception> error) {
-    int columns = columns();
-    Claj.get().<Host>serverRooms/*test.mockServerRooms*/(server.address, server.port, r -> {
-      serverRooms.put(server, r);
-      dest.clear();
-      if (r.isEmpty()) {
-        dest.table(t -> t.add("@claj.browser.no-rooms")).padTop(5).padBottom(5).growX().row();
-        return;
+    boolean[] listed = {false};
+    // The subscription is reused if already opened, so refreshing doesn't list the rooms again
+    Claj.get().<Host>subscribeRooms/*test.mockServerRooms*/(server.address, server.port, s -> {
+      serverRooms.put(server, s.rooms);
+      // The table can be replaced if the dialog was rebuilt
+      buildRooms(servers.get(server, dest), s.rooms);
+      // Rooms are shown while a large list is still streamed
+      if (!s.isListed()) return;
+      ClajServers.recordRooms(server.address, server.port, s.rooms.size);
+      if (!listed[0]) {
+        listed[0] = true;
+        done.run();
       }
-      r.each(room -> {
-        if (isHidden(room.state)) return;
-        addRoom(dest, room);
-        if (dest.getChildren().size % columns == 0)
-          dest.row();
-      });
-      done.run();
     }, e -> {
       dest.clear();
       dest.table(inner -> {
@@ -274,6 +305,33 @@ public class BrowserDialog extends BaseDialog {
     });
   }
 
+  /**
+   * Shows the rooms in a {@link VirtualGrid}, that only builds the visible cards. <br>
+   * The grid of the table is reused if already present, so new results only rebind the visible cards.
+   */
+  public void buildRooms(Table dest, Seq<ClajRoom<Host>> rooms) {
+    if (rooms.isEmpty()) {
+      dest.clear();
+      dest.table(t -> t.add("@claj.browser.no-rooms")).padTop(5).padBottom(5).growX().row();
+      return;
+    }
+
+    VirtualGrid<ClajRoom<Host>, RoomCard> grid = findGrid(dest);
+    if (grid == null) {
+      float w = targetWidth();
+      dest.clear();
+      grid = new VirtualGrid<>(columns(), w, 4f, 7f, () -> new RoomCard(w), RoomCard::set);
+      dest.add(grid).top().left().row();
+    }
+    grid.setItems(serverSearch.isEmpty() ? rooms : rooms.select(room -> !isHidden(room.getState())));
+  }
+
+  @SuppressWarnings("unchecked")
+  VirtualGrid<ClajRoom<Host>, RoomCard> findGrid(Table dest) {
+    return dest.getChildren().size == 1 && dest.getChildren().first() instanceof VirtualGrid<?, ?> grid ?
+           (VirtualGrid<ClajRoom<Host>, RoomCard>)grid : null;
+  }
+
   public boolean isHidden(Host host) {
     if (serverSearch.isEmpty()) return false;
     return host == null
@@ -283,58 +341,6 @@ public class BrowserDialog extends BaseDialog {
         && !(host.mode != null && host.mode.name().toLowerCase().contains(serverSearch));
   }
 
-  public void addRoom(Table dest, ClajRoom<Host> room) {
-    Host host = room.state;
-    float w = targetWidth(), tw = w - 20f;
-    String versionString = getVersionString(host);
-
-    dest.button(inner -> {
-      inner.table(Tex.whiteui, title -> {
-        title.setColor(Pal.gray);
-        if (host == null) title.add("...", Pal.accent).padLeft(10).padTop(5).growX().left();
-        else {
-          title.add(host.name, Styles.outlineLabel).padLeft(10).width(tw).growX().left().ellipsis(true)
-               .self(c -> c.padTop(versionString.isEmpty() ? 5 : 3));
-          if (!versionString.isEmpty())
-            title.row().add(versionString, Styles.outlineLabel).padLeft(10).width(tw).growX().left().ellipsis(true);
-        }
-      }).height(40f).growX().row();
-
-      inner.stack(new Table(Tex.whitePane, desc -> {
-        desc.setColor(Pal.gray);
-        if (host == null) {
-          desc.add("").left().row();
-          desc.add("@claj.browser.no-room-data").center().row();
-          desc.add("").padBottom(10).left().row();
-          return;
-        }
-        desc.top().left();
-        desc.add("[lightgray]" + (Core.bundle.format(
-          "players" + (host.players == 1 && host.playerLimit <= 0 ? ".single" : ""),
-            (host.players == 0 ? "[lightgray]" : "[accent]") + host.players +
-            (host.playerLimit > 0 ? "[lightgray]/[accent]" + host.playerLimit : "") + "[lightgray]")
-        )).left().ellipsis(true).row();
-        desc.add("[lightgray]" +
-                 Core.bundle.format("save.map", "[accent]" + host.mapname) +
-                 "[lightgray] / [accent]" +
-                 (host.modeName == null ? host.mode.toString() : host.modeName)
-        ).width(tw - 10).left().ellipsis(true).row();
-        desc.add("[lightgray]" + Core.bundle.format("save.wave", "[accent]" + host.wave)).left()
-            .ellipsis(true).padBottom(10).row();
-
-      }), new Table(t -> {
-        t.bottom().right();
-        t.table(Tex.whiteui, foot -> {
-          foot.setColor(Pal.gray);
-          if (room.isProtected)
-            foot.image(Icon.lock).padLeft(10).padBottom(7).padRight(-5).left().size(20).get().setScale(0.55f);
-          foot.add(room.link.encodedRoomId, Color.lightGray, 0.8f).padLeft(5).padBottom(-2).padRight(3).growX().right().labelAlign(Align.right);
-        }).minWidth(/*w*/ MIN_CARD_SIZE / 3f).height(20f).pad(5).right();
-      })).grow().row();
-    }, style, () -> ClajUi.join.joinRoom(room.link, room.isProtected)
-    ).width(w).padBottom(7f).padRight(4f).top().left().growY();
-  }
-
   public void section(String name, String host, Table src, Table dest, Runnable refresh) {
     Collapser coll = new Collapser(src, Core.settings.getBool("claj-collapsed-" + name, false));
     dest.table(head -> {
@@ -368,21 +374,9 @@ public class BrowserDialog extends BaseDialog {
   }
 
   public void filterRooms() {
-    int columns = columns();
     for(var e : servers) {
-      Server server = e.key;
-      Table table = e.value;
-
-      Seq<ClajRoom<Host>> rooms = serverRooms.get(server);
-      if (rooms == null) continue;
-
-      table.clear();
-      rooms.each(room -> {
-        if (isHidden(room.state)) return;
-        addRoom(table, room);
-        if (table.getChildren().size % columns == 0)
-          table.row();
-      });
+      Seq<ClajRoom<Host>> rooms = serverRooms.get(e.key);
+      if (rooms != null) buildRooms(e.value, rooms);
     }
   }
 
@@ -463,4 +457,92 @@ public class BrowserDialog extends BaseDialog {
     if (menu == null) Log.err("Unable to place claj buttons, main container not found!");
     return menu;
   }
+
+
+  /** A room card, that is rebound to other rooms when scrolling, instead of being rebuilt. */
+  public class RoomCard extends Button {
+    ClajRoom<Host> room;
+    boolean decoded;
+    final Label title, version, players, map, wave, id;
+    final Table foot = new Table(Tex.whiteui);
+    final Image lock;
+    final Cell<Image> lockCell;
+
+    public RoomCard(float w) {
+      super(style);
+      float tw = w - 20f;
+
+      table(Tex.whiteui, t -> {
+        t.setColor(Pal.gray);
+        t.add(title = new Label("", Styles.outlineLabel)).padLeft(10).width(tw).growX().left().ellipsis(true).row();
+        t.add(version = new Label("", Styles.outlineLabel)).padLeft(10).width(tw).growX().left().ellipsis(true);
+      }).height(40f).growX().row();
+
+      stack(new Table(Tex.whitePane, desc -> {
+        desc.setColor(Pal.gray);
+        desc.top().left();
+        players = desc.add("").left().ellipsis(true).get();
+        desc.row();
+        map = desc.add("").width(tw - 10).left().ellipsis(true).get();
+        desc.row();
+        wave = desc.add("").left().ellipsis(true).padBottom(10).get();
+        desc.row();
+
+      }), new Table(t -> {
+        t.bottom().right();
+        t.add(foot).minWidth(/*w*/ MIN_CARD_SIZE / 3f).height(20f).pad(5).right();
+      })).grow().row();
+
+      foot.setColor(Pal.gray);
+      lockCell = foot.image(Icon.lock).padLeft(10).padBottom(7).padRight(-5).left().size(20);
+      lock = lockCell.get();
+      lock.setScale(0.55f);
+      id = foot.add("", Color.lightGray, 0.8f).padLeft(5).padBottom(-2).padRight(3).growX().right()
+               .labelAlign(Align.right).get();
+
+      clicked(() -> {
+        if (room != null) ClajUi.join.joinRoom(room.link, room.isProtected);
+      });
+    }
+
+    @Override
+    public void act(float delta) {
+      super.act(delta);
+      // Rebind when the state has been decoded
+      if (room != null && !decoded && room.isDecoded()) set(room);
+    }
+
+    public void set(ClajRoom<Host> room) {
+      this.room = room;
+      // Only visible rooms are decoded. Checked before, in case it's decoded in the meantime
+      decoded = room.isDecoded();
+      Host host = room.peekState();
+      String versionString = getVersionString(host);
+
+      id.setText(room.link.encodedRoomId);
+      lock.visible = room.isProtected;
+      lockCell.size(room.isProtected ? 20 : 0).padLeft(room.isProtected ? 10 : 0);
+      if (host == null) {
+        title.setText("[accent]...");
+        version.setText("");
+        players.setText("");
+        map.setText(Core.bundle.get("claj.browser.no-room-data"));
+        wave.setText("");
+      } else {
+        title.setText(host.name);
+        version.setText(versionString);
+        players.setText("[lightgray]" + (Core.bundle.format(
+          "players" + (host.players == 1 && host.playerLimit <= 0 ? ".single" : ""),
+            (host.players == 0 ? "[lightgray]" : "[accent]") + host.players +
+            (host.playerLimit > 0 ? "[lightgray]/[accent]" + host.playerLimit : "") + "[lightgray]")
+        ));
+        map.setText("[lightgray]" +
+                    Core.bundle.format("save.map", "[accent]" + host.mapname) +
+                    "[lightgray] / [accent]" +
+                    (host.modeName == null ? host.mode.toString() : host.modeName));
+        wave.setText("[lightgray]" + Core.bundle.format("save.wave", "[accent]" + host.wave));
+      }
+      foot.invalidateHierarchy();
+    }
+  }
 }
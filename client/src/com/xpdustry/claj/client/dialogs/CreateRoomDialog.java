@@ -28,6 +28,7 @@ import arc.scene.ui.TextButton.TextButtonStyle;
 import arc.scene.ui.layout.*;
 import arc.struct.ArrayMap;
 import arc.struct.ObjectMap;
+import arc.struct.ObjectSet;
 import arc.struct.Seq;
 import arc.util.*;
 
@@ -40,6 +41,7 @@ import mindustry.ui.dialogs.BaseDialog;
 
 import com.xpdustry.claj.api.Claj;
 import com.xpdustry.claj.api.ClajLink;
+import com.xpdustry.claj.api.ClajRelayRanking;
 import com.xpdustry.claj.client.*;
 import com.xpdustry.claj.common.status.CloseReason;
 
@@ -52,6 +54,8 @@ public class CreateRoomDialog extends BaseDialog {
 
   ClajLink link;
   Server selected;
+  /** Pseudo server used to select the best relay of the ranking. */
+  final Server auto = new Server();
   final Table custom = new Table(), online = new Table();
   boolean refreshingOnline;
 
@@ -73,6 +77,8 @@ public class CreateRoomDialog extends BaseDialog {
 
     keyDown(KeyCode.f5, this::refreshAll);
     shown(() -> Time.run(7f, this::refreshAll)); // Gives time to this dialog to display
+    shown(() -> Claj.get().ranking().startRefreshing());
+    hidden(() -> Claj.get().ranking().stopRefreshing());
 
     cont.top();
     cont.pane(inner -> {
@@ -84,6 +90,9 @@ public class CreateRoomDialog extends BaseDialog {
                .tooltip("@claj.settings.title");
         }).padBottom(24).growX().row();
 
+        // Automatic selection
+        setupAuto(hosts);
+
         // Custom servers
         section("@claj.manage.custom-servers", custom, hosts, () -> ClajUi.add.show((n, h) -> {
           ClajServers.custom.put(n, h);
@@ -148,8 +157,9 @@ public class CreateRoomDialog extends BaseDialog {
   public void refreshCustom() { refreshCustom(true); }
   public void refreshCustom(boolean cancelPrevious) {
     if (cancelPrevious) Claj.get().cancelPingers();
-    selected = null;
+    if (selected != auto) selected = null;
     ClajServers.loadCustom();
+    syncRanking();
     setupServers(ClajServers.custom, custom,
       s -> ClajUi.add.show(s.name, s.get(), (n, a) -> {
         int index = ClajServers.custom.indexOfKey(s.name);
@@ -171,7 +181,7 @@ public class CreateRoomDialog extends BaseDialog {
     if (refreshingOnline) return; // Avoid to re-trigger a refresh while refreshing
     if (cancelPrevious) Claj.get().cancelPingers();
     refreshingOnline = true;
-    selected = null;
+    if (selected != auto) selected = null;
 
     online.clear();
     online.button(b ->
@@ -183,6 +193,7 @@ public class CreateRoomDialog extends BaseDialog {
 
     ClajServers.refreshOnline(() -> {
       refreshingOnline = false;
+      syncRanking();
       if (ClajServers.online.isEmpty()) {
         online.clear();
         online.button("@claj.servers.empty", () -> {}).growX().padTop(5).padBottom(5).row();
@@ -211,6 +222,33 @@ public class CreateRoomDialog extends BaseDialog {
     dest.add(coll).padBottom(10).growX().row();
   }
 
+  public void setupAuto(Table dest) {
+    dest.button(b -> b.label(() -> {
+      ClajRelayRanking ranking = Claj.get().ranking();
+      ClajRelayRanking.Relay best = ranking.peekBest();
+      return Core.bundle.get("claj.manage.auto-server") + " [lightgray](" +
+             (best != null ? best + ", " + (int)best.rtt + "ms" :
+              Core.bundle.get(ranking.isRefreshing() ? "claj.manage.auto-searching" : "claj.manage.auto-none")) +
+             ')';
+    }).pad(5).expandX(), fixedToglet, () -> selected = auto
+    ).update(b -> b.setChecked(selected == auto)).growX().padTop(5).padBottom(15).row();
+  }
+
+  /** Keeps only custom and public servers in the relay ranking. */
+  void syncRanking() {
+    ClajRelayRanking ranking = Claj.get().ranking();
+    ObjectSet<ClajRelayRanking.Relay> known = new ObjectSet<>();
+    Server parser = new Server();
+
+    for (String host : ClajServers.custom.values()) {
+      if (parser.set(host)) known.add(ranking.add(parser.address, parser.port));
+    }
+    for (String host : ClajServers.online.values()) {
+      if (parser.set(host)) known.add(ranking.add(parser.address, parser.port));
+    }
+    ranking.retain(known::contains);
+  }
+
   public void setupServers(ArrayMap<String, String> servers, Table table, Cons<Server> edit, Cons<Server> delete) {
     table.clear();
 
@@ -289,20 +327,25 @@ public class CreateRoomDialog extends BaseDialog {
     Timer.Task t = Timer.schedule(this::closeRoom, 10);
 
     ClajUi.settings.setSettings();
-    Claj.get().createRoom(selected.address, selected.port, l -> {
+    Cons<ClajLink> created = l -> {
       Vars.ui.loadfrag.hide();
       t.cancel();
       link = l;
-    }, c -> {
+    };
+    Cons<CloseReason> closed = c -> {
       Vars.ui.loadfrag.hide();
       t.cancel();
       if (link == null) Vars.ui.showErrorMessage("@claj.manage.room-creation-failed");
       else showError(c);
       link = null;
-    }, e -> {
+    };
+    Cons<Throwable> failed = e -> {
       Vars.net.handleException(e);
       t.cancel();
-    });
+    };
+
+    if (selected == auto) Claj.get().createRoomOnBest(created, closed, failed);
+    else Claj.get().createRoom(selected.address, selected.port, created, closed, failed);
   }
 
   public void showError(CloseReason reason) {
@@ -0,0 +1,212 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.client.util;
+
+import arc.func.Cons2;
+import arc.func.Prov;
+import arc.math.geom.Vec2;
+import arc.scene.Element;
+import arc.scene.Group;
+import arc.scene.ui.ScrollPane;
+import arc.scene.ui.layout.WidgetGroup;
+import arc.struct.IntMap;
+import arc.struct.Seq;
+
+
+/**
+ * A grid of fixed size cells, that only creates the elements of the visible cells,
+ * according to the first {@link ScrollPane} ancestor. <br>
+ * Elements scrolled out of the view are recycled and bound to the newly visible items,
+ * so scrolling through many items doesn't create new elements.
+ * <p>
+ * The cell height is measured using the first bound element, so every element must have the same height.
+ */
+public class VirtualGrid<T, E extends Element> extends WidgetGroup {
+  /** Number of rows bound outside the visible area, to avoid empty cells when scrolling fast. */
+  public static int overscan = 1;
+
+  public final int columns;
+  public final float cellWidth, spacingX, spacingY;
+  protected final Prov<E> factory;
+  protected final Cons2<E, T> binder;
+  protected final Seq<T> items = new Seq<>();
+  /** Bound elements, by item index. */
+  protected final IntMap<E> bound = new IntMap<>();
+  protected final Seq<E> pool = new Seq<>();
+  protected float cellHeight = -1;
+  protected int first, last = -1;
+  /** Whether bound elements must be bound again, because the items changed. */
+  protected boolean dirty;
+  protected ScrollPane pane;
+  private final Vec2 tmp = new Vec2();
+
+  public VirtualGrid(int columns, float cellWidth, float spacingX, float spacingY, Prov<E> factory,
+                     Cons2<E, T> binder) {
+    this.columns = Math.max(1, columns);
+    this.cellWidth = cellWidth;
+    this.spacingX = spacingX;
+    this.spacingY = spacingY;
+    this.factory = factory;
+    this.binder = binder;
+  }
+
+  /** Replaces the items. Elements are only bound again, not recreated. */
+  public void setItems(Seq<T> items) {
+    int rows = rows();
+    this.items.set(items);
+    dirty = true;
+    if (cellHeight < 0 || rows != rows()) invalidateHierarchy();
+  }
+
+  public Seq<T> getItems() {
+    return items;
+  }
+
+  public int rows() {
+    return (items.size + columns - 1) / columns;
+  }
+
+  public float rowHeight() {
+    return cellHeight() + spacingY;
+  }
+
+  public float cellHeight() {
+    if (cellHeight < 0 && !items.isEmpty()) {
+      E element = obtain();
+      binder.get(element, items.first());
+      element.validate();
+      cellHeight = element.getPrefHeight();
+      free(element);
+    }
+    return Math.max(cellHeight, 0);
+  }
+
+  @Override
+  public float getPrefWidth() {
+    return columns * (cellWidth + spacingX);
+  }
+
+  @Override
+  public float getPrefHeight() {
+    return rows() * rowHeight();
+  }
+
+  @Override
+  public void layout() {
+    // Positions depend on the height
+    dirty = true;
+    updateVisible();
+  }
+
+  @Override
+  protected void childrenChanged() {
+    // The size doesn't depend on the bound elements
+  }
+
+  @Override
+  public void act(float delta) {
+    updateVisible();
+    super.act(delta);
+  }
+
+  protected void updateVisible() {
+    if (items.isEmpty()) {
+      freeAll();
+      return;
+    }
+
+    float rowHeight = rowHeight(), height = getHeight();
+    int rows = rows(), newFirst = 0, newLast = items.size - 1;
+    ScrollPane pane = pane();
+    if (pane != null && rowHeight > 0) {
+      // Visible area of the pane, in local coordinates
+      localToStageCoordinates(tmp.set(0, 0));
+      float bottom = tmp.y;
+      pane.localToStageCoordinates(tmp.set(0, 0));
+      float visibleBottom = tmp.y - bottom, visibleTop = visibleBottom + pane.getHeight();
+
+      int firstRow = Math.max(0, (int)((height - visibleTop) / rowHeight) - overscan),
+          lastRow = Math.min(rows - 1, (int)((height - visibleBottom) / rowHeight) + overscan);
+      if (lastRow < firstRow) {
+        freeAll();
+        return;
+      }
+      newFirst = firstRow * columns;
+      newLast = Math.min(items.size - 1, (lastRow + 1) * columns - 1);
+    }
+
+    if (!dirty && newFirst == first && newLast == last) return;
+
+    // Recycle elements outside the new range
+    IntMap.Keys keys = bound.keys();
+    while (keys.hasNext) {
+      int index = keys.next();
+      if (index < newFirst || index > newLast || index >= items.size) {
+        free(bound.get(index));
+        keys.remove();
+      }
+    }
+
+    for (int i=newFirst; i<=newLast; i++) {
+      E element = bound.get(i);
+      boolean bind = dirty || element == null;
+      if (element == null) bound.put(i, element = obtain());
+      if (bind) binder.get(element, items.get(i));
+      int row = i / columns, column = i % columns;
+      element.setBounds(column * (cellWidth + spacingX), height - row * rowHeight - cellHeight,
+                        cellWidth, cellHeight);
+    }
+
+    first = newFirst;
+    last = newLast;
+    dirty = false;
+  }
+
+  protected ScrollPane pane() {
+    if (pane == null || !isDescendantOf(pane)) {
+      pane = null;
+      for (Group parent = getParent(); parent != null; parent = parent.getParent()) {
+        if (parent instanceof ScrollPane p) {
+          pane = p;
+          break;
+        }
+      }
+    }
+    return pane;
+  }
+
+  protected E obtain() {
+    E element = pool.isEmpty() ? factory.get() : pool.pop();
+    addChild(element);
+    return element;
+  }
+
+  protected void free(E element) {
+    removeChild(element, false);
+    pool.add(element);
+  }
+
+  protected void freeAll() {
+    for (E element : bound.values()) free(element);
+    bound.clear();
+    first = 0;
+    last = -1;
+  }
+}
@@ -21,7 +21,7 @@ package com.xpdustry.claj.common;
 
 import arc.func.Prov;
 import arc.net.ArcNetException;
-import arc.struct.ObjectMap;
+import arc.struct.ObjectIntMap;
 
 import com.xpdustry.claj.common.packets.Packet;
 
@@ -37,8 +37,11 @@ public class ClajNet {
   /** Maximum number of packet that can be registered. */
   public static final int MAX_PACKETS = 255;
 
-  protected static final ObjectMap<Class<?>, Byte> packetToId = new ObjectMap<>(32);
-  protected static final ObjectMap<Byte, Prov<?>> idToPacket = new ObjectMap<>(32);
+  /** Packet ids by type. Only holds ids of registered packets. */
+  protected static final ObjectIntMap<Class<?>> packetToId = new ObjectIntMap<>(32);
+  /** Packet constructors, indexed by unsigned packet id. */
+  protected static final Prov<?>[] idToPacket = new Prov[MAX_PACKETS];
+  protected static int registered;
 
   /**
    * Registers a new packet type for serialization. Ignores if already registered.
@@ -47,23 +50,43 @@ public class ClajNet {
   public static <T extends Packet> void register(Prov<T> cons) {
     Class<?> type = cons.get().getClass();
     if (packetToId.containsKey(type)) return;
-    if (packetToId.size >= MAX_PACKETS) throw new IllegalArgumentException("packet limit reached");
-    byte id = (byte)packetToId.size;
+    if (registered >= MAX_PACKETS) throw new IllegalArgumentException("packet limit reached");
+    int id = registered++;
     packetToId.put(type, id);
-    idToPacket.put(id, cons);
+    idToPacket[id] = cons;
   }
 
-  public static byte getId(Packet packet) { return getId(packet.getClass()); }
+  /** @return the number of registered packets. Ids are between {@code 0} and this value, excluded. */
+  public static int registered() {
+    return registered;
+  }
+
+  /**
+   * @return the unsigned id of the packet type, to index arrays of size {@link #MAX_PACKETS},
+   *         or {@code -1} if not registered.
+   */
+  public static int indexOf(Class<?> packet) {
+    return packetToId.get(packet, -1);
+  }
+
+  public static byte getId(Packet packet) {
+    int id = packet.packetId();
+    if (id == -1) throw new ArcNetException("Unknown packet type: " + packet.getClass());
+    return (byte)id;
+  }
   public static byte getId(Class<? extends Packet> packet) {
-    Byte id = packetToId.get(packet);
-    if(id == null) throw new ArcNetException("Unknown packet type: " + packet.getClass());
-    return id;
+    int id = indexOf(packet);
+    if (id == -1) throw new ArcNetException("Unknown packet type: " + packet);
+    return (byte)id;
   }
 
   @SuppressWarnings("unchecked")
   public static <T extends Packet> T newPacket(byte id) {
-    Prov<?> packet = idToPacket.get(id);
+    int index = id & 0xff;
+    Prov<?> packet = index < registered ? idToPacket[index] : null;
     if (packet == null) throw new ArcNetException("Unknown packet id: " + id);
-    return (T)packet.get();
+    T instance = (T)packet.get();
+    instance.packetId(index);
+    return instance;
   }
 }
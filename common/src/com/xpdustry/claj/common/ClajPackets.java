@@ -51,16 +51,26 @@ public class ClajPackets {
     ClajNet.register(ClajPopupPacket::new);
     ClajNet.register(StreamHead::new);
     ClajNet.register(StreamChunk::new);
+    ClajNet.register(RoomListSubscribePacket::new);
+    ClajNet.register(RoomListUnsubscribePacket::new);
+    ClajNet.register(RoomListUpdatePacket::new);
+    ClajNet.register(RoomStripeRequestPacket::new);
+    ClajNet.register(RoomStripeKeyPacket::new);
+    ClajNet.register(RoomStripeJoinPacket::new);
   }
 
 
   /** Generic client connection event. */
   public static class Connect implements Packet {
+    public static final PacketPool<Connect> pool = new PacketPool<>(Connect::new, p -> p.address = null);
+
     public String address;
   }
 
   /** Generic client disconnection event. */
   public static class Disconnect implements Packet {
+    public static final PacketPool<Disconnect> pool = new PacketPool<>(Disconnect::new, p -> p.reason = null);
+
     public arc.net.DcReason reason;
   }
 
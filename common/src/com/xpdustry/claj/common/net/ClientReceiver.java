@@ -19,29 +19,45 @@
 
 package com.xpdustry.claj.common.net;
 
+import arc.func.Boolf;
 import arc.func.Cons;
 import arc.net.*;
 import arc.struct.ObjectMap;
 import arc.util.Log;
 
+import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.ClajPackets.*;
+import com.xpdustry.claj.common.net.stream.StreamBuilder;
 import com.xpdustry.claj.common.net.stream.StreamPacket;
 import com.xpdustry.claj.common.net.stream.StreamReceiver;
 import com.xpdustry.claj.common.packets.Packet;
+import com.xpdustry.claj.common.packets.PacketPool;
 import com.xpdustry.claj.common.util.AddressUtil;
 
 
 /** A client listener that can delegate packet decoding and reception to the main app. */
 public class ClientReceiver implements NetListener {
+  /** Listeners of registered packets, indexed by packet id. */
+  @SuppressWarnings("unchecked")
+  protected final Cons<?>[] packetListeners = new Cons[ClajNet.MAX_PACKETS];
+  /** Listeners of local packets, that are not registered in {@link ClajNet}. */
   protected final ObjectMap<Class<?>, Cons<?>> listeners = new ObjectMap<>();
   protected Cons<Runnable> delegator;
+  /** Packets waiting to be handled by the delegator thread, {@code null} if not delegated. */
+  protected PacketQueue<Object> queue;
   protected NetListenerFilter filter;
+  protected Cons<StreamBuilder> streamProgress;
+  /** Takes over packets before their decoding, see {@link #setDecoder(Boolf)}. */
+  protected Boolf<Packet> decoder;
+  /** Streams of the connection, cleared when disconnected. */
+  protected final StreamReceiver streams = new StreamReceiver();
 
   /** Receive will not be delegated. */
   public ClientReceiver(EndPoint server) { this(server, null, null); }
-  public ClientReceiver(EndPoint server, Cons<Runnable> delegator) { this(server, null, null); }
+  public ClientReceiver(EndPoint server, Cons<Runnable> delegator) { this(server, delegator, null); }
   public ClientReceiver(EndPoint server, Cons<Runnable> delegator, NetListenerFilter filter) {
     this.delegator = delegator;
+    if (delegator != null) queue = new PacketQueue<>(delegator, (c, p) -> received(p));
     this.filter = filter;
     server.addListener(this);
   }
@@ -53,30 +69,35 @@ public class ClientReceiver implements NetListener {
   @Override
   public void connected(Connection connection) {
     if (filter != null && !filter.connected(connection)) return;
-    Connect packet = new Connect();
+    Connect packet = Connect.pool.obtain();
     packet.address = AddressUtil.get(connection);
-    delegateReceive(packet);
+    delegateReceive(connection, packet);
   }
 
   @Override
   public void disconnected(Connection connection, DcReason reason) {
     if (filter != null && !filter.disconnected(connection, reason)) return;
-    Disconnect packet = new Disconnect();
+    Disconnect packet = Disconnect.pool.obtain();
     packet.reason = reason;
-    delegateReceive(packet);
+    delegateReceive(connection, packet);
   }
 
   @Override
   public void received(Connection connection, Object object) {
     if (filter != null && !filter.received(connection, object)) return;
     if (!(object instanceof Packet packet)) return;
-    delegateReceive(packet);
+    delegateReceive(connection, packet);
   }
 
   @Override
   public void idle(Connection connection) {
     if (filter != null && !filter.idle(connection)) return;
-    delegateReceive(Idle.instance);
+    delegateReceive(connection, Idle.instance);
+  }
+
+  /** @return the queue of packets waiting for the delegator thread, {@code null} if not delegated. */
+  public PacketQueue<Object> queue() {
+    return queue;
   }
 
   /** Whether packet reception is delegated to the main thread or not. */
@@ -88,35 +109,86 @@ public class ClientReceiver implements NetListener {
     handle(type, p -> listener.run());
   }
 
+  /** Packets must be registered in {@link ClajNet} before. */
   public <T extends Packet> void handle(Class<T> type, Cons<T> listener) {
-    listeners.put(type, listener);
+    int id = ClajNet.indexOf(type);
+    if (id != -1) packetListeners[id] = listener;
+    else listeners.put(type, listener);
+  }
+
+  /**
+   * Packets accepted by the decoder are not decoded nor handled by the receiver. <br>
+   * The decoder must call {@link Packet#handled()} and then {@link #dispatch(Packet)} itself, in order.
+   */
+  public void setDecoder(Boolf<Packet> decoder) {
+    this.decoder = decoder;
+  }
+
+  /** Called after each chunk received, to decode streamed packets progressively. */
+  public void handleStreamProgress(Cons<StreamBuilder> listener) {
+    streamProgress = listener;
   }
 
   @SuppressWarnings("unchecked")
   public <T extends Packet> Cons<T> getListener(Class<T> type) {
-    return (Cons<T>)listeners.get(type);
+    return (Cons<T>)listenerOf(type);
   }
 
-  /** Send packet reception to the main thread or not according to {@link #delegated}. */
+  protected Cons<?> listenerOf(Class<?> type) {
+    int id = ClajNet.indexOf(type);
+    return id != -1 ? packetListeners[id] : listeners.get(type);
+  }
+
+  /** Same as {@link #listenerOf(Class)}, but uses the cached id of the packet. */
+  protected Cons<?> listenerOf(Packet packet) {
+    int id = packet.packetId();
+    return id != -1 ? packetListeners[id] : listeners.get(packet.getClass());
+  }
+
+  /** Queues packet reception for the main thread or not according to {@link #delegated}. */
   public void delegateReceive(Packet packet) {
-    if (delegated()) delegator.get(() -> received(packet));
-    else received(packet);
+    delegateReceive(null, packet);
+  }
+
+  /** Same as {@link #delegateReceive(Packet)}, but closes the connection if the queue is full. */
+  public void delegateReceive(Connection connection, Packet packet) {
+    if (!delegated()) received(packet);
+    else if (!queue.add(null, packet)) {
+      Log.warn("Receive queue full, @ dropped.", packet.getClass().getSimpleName());
+      recycle(packet);
+      if (connection != null) connection.close(DcReason.error);
+    }
   }
 
-  @SuppressWarnings("unchecked")
   public void received(Packet packet) {
     try {
+      PacketPool.check(packet);
+      if (packet instanceof Disconnect) streams.clear();
+      if (decoder != null && decoder.get(packet)) return;
       packet.handled();
 
       if (packet instanceof StreamPacket stream) {
-        packet = StreamReceiver.received(stream);
+        packet = streams.received(stream, streamProgress);
         if (packet != null) received(packet);
         return;
       }
 
-      var listener = (Cons<Packet>)listeners.get(packet.getClass());
-      if (listener != null) listener.get(packet);
-      else packet.handleClient();
+      dispatch(packet);
     } catch (Throwable e) { Log.err(e); }
+    finally { recycle(packet); }
+  }
+
+  /** Calls the listener of an already decoded packet. */
+  @SuppressWarnings("unchecked")
+  public void dispatch(Packet packet) {
+    var listener = (Cons<Packet>)listenerOf(packet);
+    if (listener != null) listener.get(packet);
+    else packet.handleClient();
+  }
+
+  /** Gives back the local event packets to their pool, once handled. */
+  protected void recycle(Packet packet) {
+    if (packet instanceof Connect connect) Connect.pool.free(connect);
+    else if (packet instanceof Disconnect disconnect) Disconnect.pool.free(disconnect);
   }
 }
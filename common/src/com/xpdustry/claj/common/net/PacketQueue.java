@@ -0,0 +1,173 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.net;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import arc.func.Cons;
+import arc.func.Cons2;
+
+import com.xpdustry.claj.common.packets.Packet;
+
+
+/**
+ * Lock-free bounded queue of (connection, packet) pairs, with many producers and a single consumer. <br>
+ * Producers are the network threads, and the consumer is the thread running the task given to the poster.
+ * Only one drain task is posted per batch, instead of one closure per packet.
+ * <p>
+ * When full, packets are rejected and counted, instead of stalling the producing network thread
+ * for every connection. The caller should then close the connection, as it lost a packet.
+ */
+public class PacketQueue<C> {
+  /** Default capacity of new queues, must be a power of two. */
+  public static int defaultCapacity = 4096;
+
+  protected final int mask;
+  protected final AtomicLongArray sequences;
+  protected final Object[] connections, packets;
+  protected final AtomicLong tail = new AtomicLong();
+  /** Only written by the consumer. */
+  protected volatile long head;
+
+  protected final Cons<Runnable> poster;
+  protected final Cons2<C, Packet> consumer;
+  protected final AtomicBoolean scheduled = new AtomicBoolean();
+  /** Number of drain requests not yet handled by the thread draining. */
+  protected final AtomicInteger drainRequests = new AtomicInteger();
+  protected final Runnable drainTask = this::drain;
+
+  /** Number of packets handled by the last drain. */
+  public volatile int lastDrainCount;
+  /** Duration of the last drain and the longest one, in nanoseconds. */
+  public volatile long lastDrainTime, maxDrainTime;
+  /** Highest queue depth seen by a drain. */
+  public volatile int maxDepth;
+  /** Number of packets rejected because the queue was full. */
+  public final AtomicLong dropped = new AtomicLong();
+
+  public PacketQueue(Cons<Runnable> poster, Cons2<C, Packet> consumer) {
+    this(defaultCapacity, poster, consumer);
+  }
+
+  /** @param capacity will be rounded up to a power of two. */
+  public PacketQueue(int capacity, Cons<Runnable> poster, Cons2<C, Packet> consumer) {
+    capacity = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    mask = capacity - 1;
+    sequences = new AtomicLongArray(capacity);
+    connections = new Object[capacity];
+    packets = new Object[capacity];
+    for (int i=0; i<capacity; i++) sequences.set(i, i);
+    this.poster = poster;
+    this.consumer = consumer;
+  }
+
+  /**
+   * Adds the pair and schedules a drain if needed. Never waits.
+   * @return {@code false} if the queue is full, the packet is then counted in {@link #dropped}.
+   */
+  public boolean add(C connection, Packet packet) {
+    boolean added = offer(connection, packet);
+    if (!added) dropped.incrementAndGet();
+    schedule();
+    return added;
+  }
+
+  /** @return {@code false} if the queue is full. */
+  public boolean offer(C connection, Packet packet) {
+    while (true) {
+      long pos = tail.get();
+      int index = (int)(pos & mask);
+      long diff = sequences.get(index) - pos;
+
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          connections[index] = connection;
+          packets[index] = packet;
+          sequences.set(index, pos + 1); // publish
+          return true;
+        }
+      } else if (diff < 0) return false;
+      // else another producer took the slot, retry
+    }
+  }
+
+  /**
+   * Handles all the queued packets. Should be called by the consumer thread. <br>
+   * If the poster runs tasks in place, concurrent calls are ignored, the thread already draining handles the packets.
+   */
+  public int drain() {
+    scheduled.set(false); // packets added from now will schedule a new drain
+    if (drainRequests.getAndIncrement() != 0) return 0; // the thread draining will loop again
+
+    int count = 0, missed = 1;
+    do {
+      try { count += drain0(); }
+      catch (Throwable e) {
+        drainRequests.set(0);
+        throw e;
+      }
+      missed = drainRequests.addAndGet(-missed);
+    } while (missed != 0);
+    return count;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected int drain0() {
+    long start = System.nanoTime();
+    int depth = size(), count = 0;
+
+    for (long pos = head;; pos++) {
+      int index = (int)(pos & mask);
+      if (sequences.get(index) != pos + 1) break; // empty or not yet published
+      C connection = (C)connections[index];
+      Packet packet = (Packet)packets[index];
+      connections[index] = null;
+      packets[index] = null;
+      sequences.set(index, pos + mask + 1);
+      head = pos + 1;
+
+      consumer.get(connection, packet);
+      count++;
+    }
+
+    long time = System.nanoTime() - start;
+    lastDrainCount = count;
+    lastDrainTime = time;
+    if (time > maxDrainTime) maxDrainTime = time;
+    if (depth > maxDepth) maxDepth = depth;
+    return count;
+  }
+
+  /** @return the approximate number of queued packets. */
+  public int size() {
+    return (int)Math.max(0, tail.get() - head);
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  protected void schedule() {
+    if (scheduled.compareAndSet(false, true)) poster.get(drainTask);
+  }
+}
@@ -22,27 +22,40 @@ package com.xpdustry.claj.common.net;
 import arc.func.Cons;
 import arc.func.Cons2;
 import arc.net.*;
+import arc.struct.IntMap;
 import arc.struct.ObjectMap;
 import arc.util.Log;
 
+import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.ClajPackets.*;
 import com.xpdustry.claj.common.net.stream.StreamPacket;
 import com.xpdustry.claj.common.net.stream.StreamReceiver;
 import com.xpdustry.claj.common.packets.Packet;
+import com.xpdustry.claj.common.packets.PacketPool;
 import com.xpdustry.claj.common.util.AddressUtil;
 
 
 /** A server listener that can delegate packet decoding and reception to the main app. */
 public class ServerReceiver implements NetListener {
+  /** Listeners of registered packets, indexed by packet id. */
+  @SuppressWarnings("unchecked")
+  protected final Cons2<Connection, ?>[] packetListeners = new Cons2[ClajNet.MAX_PACKETS];
+  /** Listeners of local packets, that are not registered in {@link ClajNet}. */
   protected final ObjectMap<Class<?>, Cons2<Connection, ?>> listeners = new ObjectMap<>();
   protected Cons<Runnable> delegator;
+  /** Packets waiting to be handled by the delegator thread, {@code null} if not delegated. */
+  protected PacketQueue<Connection> queue;
   protected NetListenerFilter filter;
+  /** Streams by connection id, removed when the connection is closed. */
+  protected final IntMap<StreamReceiver> streams = new IntMap<>();
+  protected long lastStreamsExpire;
 
   /** Receive will not be delegated. */
   public ServerReceiver(EndPoint server) { this(server, null, null); }
-  public ServerReceiver(EndPoint server, Cons<Runnable> delegator) { this(server, null, null); }
+  public ServerReceiver(EndPoint server, Cons<Runnable> delegator) { this(server, delegator, null); }
   public ServerReceiver(EndPoint server, Cons<Runnable> delegator, NetListenerFilter filter) {
     this.delegator = delegator;
+    if (delegator != null) queue = new PacketQueue<>(delegator, this::received);
     this.filter = filter;
     server.addListener(this);
   }
@@ -54,7 +67,7 @@ public class ServerReceiver implements NetListener {
   @Override
   public void connected(Connection connection) {
     if (filter != null && !filter.connected(connection)) return;
-    Connect packet = new Connect();
+    Connect packet = Connect.pool.obtain();
     packet.address = AddressUtil.get(connection);
     delegateReceive(connection, packet);
   }
@@ -62,7 +75,7 @@ public class ServerReceiver implements NetListener {
   @Override
   public void disconnected(Connection connection, DcReason reason) {
     if (filter != null && !filter.disconnected(connection, reason)) return;
-    Disconnect packet = new Disconnect();
+    Disconnect packet = Disconnect.pool.obtain();
     packet.reason = reason;
     delegateReceive(connection, packet);
   }
@@ -80,6 +93,11 @@ public class ServerReceiver implements NetListener {
     delegateReceive(connection, Idle.instance);
   }
 
+  /** @return the queue of packets waiting for the delegator thread, {@code null} if not delegated. */
+  public PacketQueue<Connection> queue() {
+    return queue;
+  }
+
   /** Whether packet reception is delegated to the main thread or not. */
   public boolean delegated() {
     return delegator != null;
@@ -93,35 +111,97 @@ public class ServerReceiver implements NetListener {
     handle(type, (c, p) -> listener.get(c));
   }
 
+  /** Packets must be registered in {@link ClajNet} before. */
   public <T extends Packet> void handle(Class<T> type, Cons2<Connection, T> listener) {
-    listeners.put(type, listener);
+    int id = ClajNet.indexOf(type);
+    if (id != -1) packetListeners[id] = listener;
+    else listeners.put(type, listener);
   }
 
   @SuppressWarnings("unchecked")
   public <T extends Packet> Cons2<Connection, T> getListener(Class<T> type) {
-    return (Cons2<Connection, T>)listeners.get(type);
+    return (Cons2<Connection, T>)listenerOf(type);
+  }
+
+  protected Cons2<Connection, ?> listenerOf(Class<?> type) {
+    int id = ClajNet.indexOf(type);
+    return id != -1 ? packetListeners[id] : listeners.get(type);
+  }
+
+  /** Same as {@link #listenerOf(Class)}, but uses the cached id of the packet. */
+  protected Cons2<Connection, ?> listenerOf(Packet packet) {
+    int id = packet.packetId();
+    return id != -1 ? packetListeners[id] : listeners.get(packet.getClass());
   }
 
-  /** Send packet reception to the main thread or not according to {@link #delegated}. */
+  /**
+   * Queues packet reception for the main thread or not according to {@link #delegated}. <br>
+   * The connection is closed if the queue is full, as it lost a packet.
+   */
   public void delegateReceive(Connection connection, Packet packet) {
-    if (delegated()) delegator.get(() -> received(connection, packet));
-    else received(connection, packet);
+    if (!delegated()) received(connection, packet);
+    else if (!queue.add(connection, packet)) {
+      Log.warn("Connection @ closed: receive queue full.", AddressUtil.encodeId(connection));
+      recycle(packet);
+      connection.close(DcReason.error);
+    }
+  }
+
+  /** @return {@code null} until the stream is complete. The connection is closed if it exceeds a limit. */
+  protected Packet receivedStream(Connection connection, StreamPacket stream) {
+    // Connections that stopped sending chunks must also have their streams expired
+    long now = System.currentTimeMillis();
+    if (now - lastStreamsExpire >= StreamReceiver.expireInterval) {
+      lastStreamsExpire = now;
+      IntMap.Values<StreamReceiver> values = streams.values();
+      while (values.hasNext) {
+        StreamReceiver receiver = values.next();
+        receiver.expire(now);
+        if (receiver.isEmpty()) values.remove();
+      }
+    }
+
+    StreamReceiver receiver = streams.get(connection.getID());
+    if (receiver == null) streams.put(connection.getID(), receiver = new StreamReceiver());
+    try {
+      Packet packet = receiver.received(stream);
+      if (receiver.isEmpty()) streams.remove(connection.getID());
+      return packet;
+    } catch (StreamReceiver.LimitException e) {
+      streams.remove(connection.getID());
+      receiver.clear();
+      Log.warn("Connection @ closed: @", AddressUtil.encodeId(connection), e.getMessage());
+      connection.close(DcReason.error);
+      return null;
+    }
   }
 
   @SuppressWarnings("unchecked")
   public void received(Connection connection, Packet packet) {
     try {
+      PacketPool.check(packet);
       packet.handled();
 
       if (packet instanceof StreamPacket stream) {
-        packet = StreamReceiver.received(connection, stream);
+        packet = receivedStream(connection, stream);
         if (packet != null) received(connection, packet);
         return;
       }
+      if (packet instanceof Disconnect) {
+        StreamReceiver receiver = streams.remove(connection.getID());
+        if (receiver != null) receiver.clear();
+      }
 
-      var listener = (Cons2<Connection, Packet>)listeners.get(packet.getClass());
+      var listener = (Cons2<Connection, Packet>)listenerOf(packet);
       if (listener != null) listener.get(connection, packet);
       else packet.handleServer(connection);
     } catch (Throwable e) { Log.err(e); }
+    finally { recycle(packet); }
+  }
+
+  /** Gives back the local event packets to their pool, once handled. */
+  protected void recycle(Packet packet) {
+    if (packet instanceof Connect connect) Connect.pool.free(connect);
+    else if (packet instanceof Disconnect disconnect) Disconnect.pool.free(disconnect);
   }
 }
@@ -19,53 +19,128 @@
 
 package com.xpdustry.claj.common.net.stream;
 
-import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.zip.InflaterOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import arc.util.io.ByteBufferInput;
-import arc.util.io.ReusableByteOutStream;
 
 import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.packets.Packet;
 
 
-/** {@link mindustry.net.Streamable.StreamBuilder}. */
+/**
+ * {@link mindustry.net.Streamable.StreamBuilder}.
+ * <p>
+ * Chunks are written, or inflated, directly into a pooled buffer of the declared size.
+ * The buffer and the inflater are given back to {@link StreamPools} by {@link #free()}.
+ * <p>
+ * Older senders don't declare the inflated size of compressed streams, the buffer is grown as needed for them,
+ * up to {@link StreamReceiver#maxBytes}.
+ */
 public class StreamBuilder {
   public final int id;
   public final byte type;
+  /** Size of the stream on the wire, so after compression if {@link #compressed}. */
   public final int total;
+  /** Size of the packet, after decompression, or {@code -1} if not declared by the sender. */
+  public final int length;
   public final boolean compressed;
-  public final ReusableByteOutStream back;
-  public final OutputStream stream;
+  /** Pooled buffer, at least {@link #length} bytes long. Only the first {@link #size()} bytes are valid. */
+  protected byte[] data;
+  protected Inflater inflater;
+  protected int size, transferred;
+  /** Time of the last received chunk, used to expire partial streams. */
+  public long lastUpdate;
 
   public StreamBuilder(StreamHead head) {
     id = head.id;
     type = head.type;
     total = head.total;
     compressed = head.compressed;
-    back = new ReusableByteOutStream();
-    stream = compressed ? new InflaterOutputStream(back) : back;
+    length = compressed ? head.size : total;
+    data = StreamPools.obtain(length >= 0 ? length : total);
+    if (compressed) inflater = StreamPools.obtainInflater();
   }
 
   public float progress() {
-    return (float)back.size() / total;
+    return (float)transferred / total;
   }
 
   public boolean isDone() {
-    return back.size() >= total;
+    return transferred >= total;
+  }
+
+  /** @return the number of bytes received (and decompressed) so far. */
+  public int size() {
+    return size;
+  }
+
+  /** @return the number of stream bytes received so far, as sent on the wire. */
+  public int transferred() {
+    return transferred;
+  }
+
+  /** @return the bytes accounted for this stream by the {@link StreamReceiver}. */
+  public int reserved() {
+    return Math.max(total, length);
   }
 
-  public void add(byte[] bytes) {
-    try { stream.write(bytes); }
-    catch (IOException e) { throw new RuntimeException(e); }
+  /** @return the bytes received (and decompressed) so far. Must not be modified nor kept after {@link #free()}. */
+  public ByteBuffer received() {
+    return ByteBuffer.wrap(data, 0, size);
+  }
+
+  /** @return {@code false} if the chunk exceeds the declared size of the stream. */
+  public boolean add(byte[] bytes) {
+    if (data == null) throw new IllegalStateException("Stream builder already freed");
+    if (transferred + bytes.length > total) return false;
+    transferred += bytes.length;
+    if (inflater == null) {
+      System.arraycopy(bytes, 0, data, size, bytes.length);
+      size += bytes.length;
+      return true;
+    }
+
+    try {
+      inflater.setInput(bytes);
+      while (!inflater.finished() && !inflater.needsInput()) {
+        if (inflater.needsDictionary()) throw new DataFormatException("Unexpected dictionary");
+        int limit = length >= 0 ? length : data.length;
+        if (size >= limit) {
+          // more data than declared?
+          if (length >= 0 || !grow()) return inflater.inflate(new byte[1]) == 0;
+          continue;
+        }
+        size += inflater.inflate(data, size, limit - size);
+      }
+      return true;
+    } catch (DataFormatException e) { throw new RuntimeException(e); }
+  }
+
+  /** Doubles the buffer, for streams without declared size. @return {@code false} if the limit is reached. */
+  protected boolean grow() {
+    int max = StreamReceiver.maxBytes;
+    if (data.length >= max) return false;
+    byte[] bigger = StreamPools.obtain(Math.min(max, data.length * 2));
+    System.arraycopy(data, 0, bigger, 0, size);
+    StreamPools.free(data);
+    data = bigger;
+    return true;
   }
 
   @SuppressWarnings("unchecked")
   public <T extends Packet> T build() {
     Packet packet = ClajNet.newPacket(type);
-    packet.read(new ByteBufferInput(ByteBuffer.wrap(back.getBytes(), 0, back.size())));
+    packet.read(new ByteBufferInput(ByteBuffer.wrap(data, 0, size)));
     return (T)packet;
   }
+
+  /** Gives back the buffer and the inflater. The builder can no longer be used. */
+  public void free() {
+    StreamPools.free(data);
+    StreamPools.free(inflater);
+    data = null;
+    inflater = null;
+  }
 }
@@ -28,9 +28,15 @@ public class StreamHead implements StreamPacket {
   private static int lastid;
 
   public int id = lastid++;
+  /** Size of the stream on the wire, so after compression if {@link #compressed}. */
   public int total;
   public byte type;
   public boolean compressed;
+  /**
+   * Size of the packet before compression, or {@code -1} if unknown. <br>
+   * Appended after the other fields, so older versions will just ignore it, and it's missing when sent by them.
+   */
+  public int size = -1;
 
   @Override
   public void read(ByteBufferInput in) {
@@ -38,6 +44,7 @@ public class StreamHead implements StreamPacket {
     total = in.readInt();
     type = in.readByte();
     compressed = in.readBoolean();
+    size = in.buffer.hasRemaining() ? in.readInt() : -1;
   }
 
   @Override
@@ -46,5 +53,6 @@ public class StreamHead implements StreamPacket {
     out.writeInt(total);
     out.writeByte(type);
     out.writeBoolean(compressed);
+    out.writeInt(size);
   }
 }
@@ -0,0 +1,147 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.net.stream;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import arc.struct.Seq;
+
+
+/**
+ * Pools of the buffers, {@link Inflater} and {@link Deflater} used by streams. <br>
+ * Buffers are pooled by power of two sizes, from {@link #minBuffer} to {@link #maxBuffer} bytes.
+ * Bigger buffers are not pooled. All methods are thread-safe.
+ */
+public class StreamPools {
+  /** Smallest pooled buffer size, must be a power of two. */
+  public static final int minBuffer = 1 << 12;
+  /** Biggest pooled buffer size, must be a power of two. */
+  public static final int maxBuffer = 1 << 20;
+  /** Maximum free objects kept per pool. */
+  public static int maxFree = 4;
+  /** Compression level of pooled deflaters. */
+  public static int level = Deflater.BEST_SPEED;
+
+  @SuppressWarnings("unchecked")
+  private static final Seq<byte[]>[] buffers = new Seq[Integer.numberOfTrailingZeros(maxBuffer) -
+                                                       Integer.numberOfTrailingZeros(minBuffer) + 1];
+  private static final Seq<Inflater> inflaters = new Seq<>(false, 4);
+  private static final Seq<Deflater> deflaters = new Seq<>(false, 4);
+
+  static {
+    for (int i=0; i<buffers.length; i++) buffers[i] = new Seq<>(false, 4);
+  }
+
+  /** @return a buffer of at least {@code size} bytes. Its content is undefined. */
+  public static byte[] obtain(int size) {
+    int bucket = bucket(size);
+    if (bucket < 0) return new byte[size];
+    Seq<byte[]> pool = buffers[bucket];
+    synchronized (pool) {
+      if (!pool.isEmpty()) return pool.pop();
+    }
+    return new byte[minBuffer << bucket];
+  }
+
+  /** Gives back a buffer obtained with {@link #obtain(int)}. It must no longer be used. */
+  public static void free(byte[] buffer) {
+    // Only buffers of a bucket size are accepted
+    if (buffer == null || Integer.bitCount(buffer.length) != 1) return;
+    int bucket = bucket(buffer.length);
+    if (bucket < 0) return;
+    Seq<byte[]> pool = buffers[bucket];
+    synchronized (pool) {
+      if (pool.size < maxFree) pool.add(buffer);
+    }
+  }
+
+  public static Inflater obtainInflater() {
+    synchronized (inflaters) {
+      if (!inflaters.isEmpty()) return inflaters.pop();
+    }
+    return new Inflater();
+  }
+
+  public static void free(Inflater inflater) {
+    if (inflater == null) return;
+    inflater.reset();
+    synchronized (inflaters) {
+      if (inflaters.size < maxFree) {
+        inflaters.add(inflater);
+        return;
+      }
+    }
+    inflater.end();
+  }
+
+  public static Deflater obtainDeflater() {
+    synchronized (deflaters) {
+      if (!deflaters.isEmpty()) return deflaters.pop();
+    }
+    return new Deflater(level);
+  }
+
+  public static void free(Deflater deflater) {
+    if (deflater == null) return;
+    deflater.reset();
+    synchronized (deflaters) {
+      if (deflaters.size < maxFree) {
+        deflaters.add(deflater);
+        return;
+      }
+    }
+    deflater.end();
+  }
+
+  /**
+   * Compresses {@code length} bytes of {@code input} into {@code output}, with a pooled deflater.
+   * @return the compressed size, or {@code -1} if it doesn't fit in {@code output}.
+   */
+  public static int deflate(byte[] input, int length, byte[] output) {
+    return deflate(input, length, output, output.length);
+  }
+
+  /**
+   * Compresses {@code length} bytes of {@code input} into the first {@code max} bytes of {@code output},
+   * with a pooled deflater.
+   * @return the compressed size, or {@code -1} if it doesn't fit in {@code max} bytes.
+   */
+  public static int deflate(byte[] input, int length, byte[] output, int max) {
+    Deflater deflater = obtainDeflater();
+    try {
+      deflater.setInput(input, 0, length);
+      deflater.finish();
+      int size = 0;
+      while (!deflater.finished()) {
+        if (size >= max) return -1;
+        size += deflater.deflate(output, size, max - size);
+      }
+      return size;
+    } finally { free(deflater); }
+  }
+
+  /** @return the bucket index of {@code size}, or {@code -1} if too big to be pooled. */
+  static int bucket(int size) {
+    if (size > maxBuffer) return -1;
+    if (size <= minBuffer) return 0;
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(minBuffer);
+  }
+}
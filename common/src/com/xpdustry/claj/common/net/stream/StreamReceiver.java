@@ -19,64 +19,147 @@
 
 package com.xpdustry.claj.common.net.stream;
 
-import arc.net.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import arc.func.Cons;
 import arc.struct.IntMap;
 
 import com.xpdustry.claj.common.packets.Packet;
 
 
+/**
+ * Reassembly state of the streams of one connection. Must be cleared when the connection is closed. <br>
+ * The number of concurrent streams and the buffered bytes are limited, and partial streams without new chunks
+ * are expired. Global counters are kept, to know the reassembly memory in use.
+ */
 public class StreamReceiver {
-  protected static IntMap<IntMap<StreamBuilder>> sbuilders;
-  protected static IntMap<StreamBuilder> cbuilders;
+  /** Maximum concurrent partial streams per connection. */
+  public static int maxStreams = 4;
+  /** Maximum bytes buffered per connection, according to the declared size of streams. */
+  public static int maxBytes = 1024 * 1024;
+  /** Delay after which a partial stream without new chunks is dropped, in ms. */
+  public static int streamTimeout = 30 * 1000;
+  /** Minimum delay between two checks of expired streams, in ms. */
+  public static int expireInterval = 1000;
+
+  /** Bytes currently reserved by partial streams, for all connections. */
+  public static final AtomicLong bufferedBytes = new AtomicLong();
+  /** Partial streams, for all connections. */
+  public static final AtomicInteger activeStreams = new AtomicInteger();
+  /** Counters since the start. */
+  public static final AtomicLong completedStreams = new AtomicLong(),
+                                 expiredStreams = new AtomicLong(),
+                                 rejectedStreams = new AtomicLong();
+
+  protected final IntMap<StreamBuilder> builders = new IntMap<>(4);
+  protected int reserved;
+  protected long lastExpire;
 
   /**
+   * @param progress can be {@code null}, called after each chunk added to a stream, including the last one.
    * @return {@code null} until a stream is complete.
+   * @throws LimitException if a limit is exceeded. The connection should be closed.
    * @throws RuntimeException if a chunk was received before his head.
    */
-  public static Packet received(StreamPacket packet) {
-    if (cbuilders == null) cbuilders = new IntMap<>(8);
+  public Packet received(StreamPacket packet, Cons<StreamBuilder> progress) {
+    long now = System.currentTimeMillis();
+    if (now - lastExpire >= expireInterval) expire(now);
 
-    if (packet instanceof StreamHead begin)
-      cbuilders.put(begin.id, new StreamBuilder(begin));
+    if (packet instanceof StreamHead begin) {
+      int bytes = Math.max(begin.total, begin.size);
+      if (begin.total < 0 || begin.size < -1 || builders.size >= maxStreams || reserved + bytes > maxBytes) {
+        rejectedStreams.incrementAndGet();
+        throw new LimitException("Stream rejected: " + builders.size + " partial streams and " + reserved +
+                                 " bytes buffered, cannot add " + bytes + " bytes.");
+      }
+      remove(builders.get(begin.id)); // replaced
+      StreamBuilder builder = new StreamBuilder(begin);
+      builder.lastUpdate = now;
+      builders.put(begin.id, builder);
+      reserve(builder.reserved());
+      activeStreams.incrementAndGet();
 
-    else if (packet instanceof StreamChunk chunk) {
-      StreamBuilder builder = cbuilders.get(chunk.id);
+    } else if (packet instanceof StreamChunk chunk) {
+      StreamBuilder builder = builders.get(chunk.id);
       if (builder == null)
         throw new RuntimeException("Received a stream chunk without a StreamHead beforehand!");
-      builder.add(chunk.data);
+      builder.lastUpdate = now;
+      if (!builder.add(chunk.data)) {
+        remove(builder);
+        rejectedStreams.incrementAndGet();
+        throw new LimitException("Stream " + builder.id + " exceeded its declared size of " + builder.total +
+                                 " bytes.");
+      }
+      if (progress != null) progress.get(builder);
       if (builder.isDone()) {
-        cbuilders.remove(chunk.id);
-        return builder.build();
+        Packet built;
+        try { built = builder.build(); }
+        finally { remove(builder); }
+        completedStreams.incrementAndGet();
+        return built;
       }
     }
 
     return null;
   }
 
-  /**
-   * @return {@code null} until a stream is complete.
-   * @throws RuntimeException if a chunk was received before his head.
-   */
-  public static Packet received(Connection connection, StreamPacket packet) {
-    if (sbuilders == null) sbuilders = new IntMap<>(16);
-
-    if (packet instanceof StreamHead begin)
-      sbuilders.get(connection.getID(), () -> new IntMap<>(8))
-              .put(begin.id, new StreamBuilder(begin));
+  public Packet received(StreamPacket packet) {
+    return received(packet, null);
+  }
 
-    else if (packet instanceof StreamChunk chunk) {
-      IntMap<StreamBuilder> builds = sbuilders.get(connection.getID());
-      StreamBuilder builder = builds != null ? builds.get(chunk.id) : null;
-      if (builder == null)
-        throw new RuntimeException("Received a stream chunk without a StreamHead beforehand!");
-      builder.add(chunk.data);
-      if (builder.isDone()) {
-        builds.remove(chunk.id);
-        if (builds.isEmpty()) sbuilders.remove(connection.getID());
-        return builder.build();
+  /** Drops partial streams without new chunks since {@link #streamTimeout}. */
+  public void expire(long now) {
+    lastExpire = now;
+    if (builders.isEmpty()) return;
+    IntMap.Values<StreamBuilder> values = builders.values();
+    while (values.hasNext) {
+      StreamBuilder builder = values.next();
+      if (now - builder.lastUpdate >= streamTimeout) {
+        values.remove();
+        release(builder);
+        expiredStreams.incrementAndGet();
       }
     }
+  }
 
-    return null;
+  public boolean isEmpty() {
+    return builders.isEmpty();
+  }
+
+  /** Number of bytes reserved by partial streams. */
+  public int reserved() {
+    return reserved;
+  }
+
+  /** Drops all partial streams. Must be called when the connection is closed. */
+  public void clear() {
+    for (StreamBuilder builder : builders.values()) release(builder);
+    builders.clear();
+  }
+
+  protected void remove(StreamBuilder builder) {
+    if (builder == null) return;
+    builders.remove(builder.id);
+    release(builder);
+  }
+
+  protected void release(StreamBuilder builder) {
+    builder.free();
+    reserve(-builder.reserved());
+    activeStreams.decrementAndGet();
+  }
+
+  protected void reserve(int bytes) {
+    reserved += bytes;
+    bufferedBytes.addAndGet(bytes);
+  }
+
+
+  /** Thrown when a stream exceeds a limit. */
+  public static class LimitException extends RuntimeException {
+    public LimitException(String message) {
+      super(message);
+    }
   }
 }
@@ -20,52 +20,148 @@
 package com.xpdustry.claj.common.net.stream;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
+import arc.net.ArcNetException;
 import arc.net.Connection;
-import arc.net.InputStreamSender;
+import arc.net.DcReason;
+import arc.net.NetListener;
 
 import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.packets.Packet;
-import com.xpdustry.claj.common.util.ByteArrayBufferOutput;
+import com.xpdustry.claj.common.util.GrowableBufferOutput;
 
 
 /**
  * {@link mindustry.net.ArcNetProvider.ArcConnection#sendStream(mindustry.net.Streamable)}.
  * <p>
+ * Unlike {@link arc.net.InputStreamSender}, which sends one chunk per idle callback, chunks are sent as long as
+ * the TCP write buffer of the connection holds less than {@link #window} bytes. The chunk size adapts to the
+ * remaining headroom, between {@link #minChunkSize} and the {@code chunkSize} given to the sender. <br>
+ * Several senders can run on the same connection, each one pushing at most {@link #burst} bytes per pass,
+ * so concurrent streams are interleaved instead of being queued behind each other.
+ * <p>
  * Note: {@link StreamHead} and {@link StreamChunk} must be registered in {@link ClajNet}.
  */
-public class StreamSender extends InputStreamSender {
+public class StreamSender implements NetListener {
+  /**
+   * Maximum bytes allowed in the TCP write buffer of the connection before waiting for it to drain. <br>
+   * Must be lower than the write buffer size minus the chunk size, to never overflow it.
+   */
+  public static int window = 16384;
+  /** Smallest chunk worth sending, the sender waits for the next idle callback below this headroom. */
+  public static int minChunkSize = 1024;
+  /** Default maximum chunk size. */
+  public static int maxChunkSize = 8192;
+  /** Maximum bytes sent by one sender per pass, to share the window with other senders. */
+  public static int burst = 8192;
+  /** Payloads smaller than this are sent uncompressed. */
+  public static int compressThreshold = 1024;
+  /** Compressed payloads must be smaller than this ratio of the original size, else they are sent uncompressed. */
+  public static float compressRatio = 0.9f;
+  /** Rough size of a chunk header, added to the chunk size when checking the headroom. */
+  static final int chunkOverhead = 16;
+
   public final Connection connection;
   public final InputStream input;
   public final byte type;
+  /** Size of the packet, before compression. */
   public final int length;
+  /** Size of the stream on the wire, after compression. */
+  public final int total;
+  public final int chunkSize;
   public final boolean compressed;
-  int id;
+  /** Pooled buffer behind {@link #input}, given back when finished. */
+  byte[] pooled;
+  int id, sent;
+  boolean started, done;
 
-  public StreamSender(Connection connection, InputStream stream, byte type, int length,
+  public StreamSender(Connection connection, InputStream stream, byte type, int length, int total,
                       int chunkSize, boolean compressed) {
-    super(stream, chunkSize);
     this.connection = connection;
     this.input = stream;
     this.type = type;
     this.length = length;
+    this.total = total;
+    this.chunkSize = Math.max(chunkSize, minChunkSize);
     this.compressed = compressed;
 
     connection.addListener(this);
+    // Don't wait for the next idle callback to start
+    pump();
+  }
+
+  @Override
+  public void idle(Connection connection) {
+    pump();
   }
 
   @Override
+  public void disconnected(Connection connection, DcReason reason) {
+    finish();
+  }
+
+  /** Sends chunks while the window allows it. Does nothing if the stream is finished. */
+  public synchronized void pump() {
+    if (done) return;
+    if (!connection.isConnected()) {
+      finish();
+      return;
+    }
+
+    try {
+      if (!started) {
+        started = true;
+        start();
+      }
+
+      for (int pushed = 0; pushed < burst;) {
+        int headroom = window - connection.getTcpWriteBufferSize() - chunkOverhead;
+        if (headroom < minChunkSize && input.available() > minChunkSize) return; // wait for the buffer to drain
+        int size = Math.max(minChunkSize, Math.min(Math.min(chunkSize, headroom), burst - pushed));
+
+        byte[] data = read(size);
+        if (data == null) {
+          finish();
+          return;
+        }
+        connection.sendTCP(next(data));
+        sent += data.length;
+        pushed += data.length;
+      }
+    } catch (IOException e) {
+      finish();
+      throw new ArcNetException("Error while sending stream", e);
+    }
+  }
+
+  /** @return the next bytes of the stream, up to {@code size}, or {@code null} if the end is reached. */
+  protected byte[] read(int size) throws IOException {
+    byte[] data = new byte[size];
+    int offset = 0;
+    while (offset < size) {
+      int read = input.read(data, offset, size - offset);
+      if (read == -1) break;
+      offset += read;
+    }
+    if (offset == 0) return null;
+    if (offset == size) return data;
+    byte[] copy = new byte[offset];
+    System.arraycopy(data, 0, copy, 0, offset);
+    return copy;
+  }
+
   protected void start() {
     StreamHead head = new StreamHead();
     id = head.id;
-    head.total = length;
+    head.total = total;
+    head.size = length;
     head.type = type;
     head.compressed = compressed;
     connection.sendTCP(head);
   }
 
-  @Override
   protected Object next(byte[] bytes) {
     StreamChunk chunk = new StreamChunk();
     chunk.id = id;
@@ -73,26 +169,54 @@ public class StreamSender extends InputStreamSender {
     return chunk;
   }
 
+  /** Stops the sender and removes it from the connection listeners. */
+  public synchronized void finish() {
+    if (done) return;
+    done = true;
+    connection.removeListener(this);
+    StreamPools.free(pooled);
+    pooled = null;
+  }
+
+  public boolean isDone() { return done; }
+  /** @return the number of stream bytes sent so far. */
+  public int sent() { return sent; }
+
 
   public static StreamSender send(Connection connection, Packet packet) {
-    return send(connection, packet, 4096);
+    return send(connection, packet, maxChunkSize);
   }
 
-  ///** Returns {@code null} if no stream chunking was needed. */
+  /** @param chunkSize the maximum chunk size. */
   public static StreamSender send(Connection connection, Packet packet, int chunkSize) {
     byte id = ClajNet.getId(packet); // will check if the packet is registered
-    ByteArrayBufferOutput buff = new ByteArrayBufferOutput(chunkSize / 2, true);
+    GrowableBufferOutput buff = new GrowableBufferOutput(chunkSize);
 
     packet.write(buff);
-    int size = buff.back.size();
-
-    //if (size < chunkSize) {
-    //  // Send raw buffer to avoid serializing twice
-    //  connection.sendTCP(buff.buffer.flip());
-    //  return null;
-    //}
-
-    InputStream in = new ByteArrayInputStream(buff.back.getBytes(), 0, size);
-    return new StreamSender(connection, in, id, size, chunkSize, buff.compressed);
+    int size = buff.size();
+    byte[] bytes = buff.array();
+    int length = size;
+    boolean compressed = false;
+
+    // Only compress when it's worth it
+    if (size >= compressThreshold) {
+      int max = (int)(size * compressRatio);
+      byte[] deflated = StreamPools.obtain(max);
+      int deflatedSize = StreamPools.deflate(bytes, size, deflated, max);
+      if (deflatedSize >= 0) {
+        buff.free();
+        bytes = deflated;
+        length = deflatedSize;
+        compressed = true;
+      } else StreamPools.free(deflated);
+    }
+
+    InputStream in = new ByteArrayInputStream(bytes, 0, length);
+    StreamSender sender = new StreamSender(connection, in, id, size, length, chunkSize, compressed);
+    synchronized (sender) {
+      if (sender.done) StreamPools.free(bytes);
+      else sender.pooled = bytes;
+    }
+    return sender;
   }
 }
@@ -23,18 +23,21 @@ import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
 import com.xpdustry.claj.common.status.MessageType;
+import com.xpdustry.claj.processor.Codec;
 
 
+@Codec
 public class ClajMessagePacket extends DelayedPacket {
+  @Codec.Field
   public MessageType message;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    message = MessageType.all[read.readByte()];
+    ClajMessagePacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    write.writeByte(message.ordinal());
+    ClajMessagePacketCodec.write(this, write);
   }
 }
@@ -23,21 +23,26 @@ import arc.net.DcReason;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.processor.Codec;
 
+
+@Codec
 public class ConnectionClosedPacket extends ConnectionWrapperPacket {
-  private static final DcReason[] reasons = DcReason.values();
+  public static final PacketPool<ConnectionClosedPacket> pool = new PacketPool<>(ConnectionClosedPacket::new, p -> {
+    p.conID = -1;
+    p.reason = null;
+  });
 
+  @Codec.Field
   public DcReason reason;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    super.readImpl(read);
-    reason = reasons[read.readByte()];
+    ConnectionClosedPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    super.write(write);
-    write.writeByte(reason.ordinal());
+    ConnectionClosedPacketCodec.write(this, write);
   }
 }
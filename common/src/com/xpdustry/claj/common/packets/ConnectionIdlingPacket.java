@@ -20,4 +20,7 @@
 package com.xpdustry.claj.common.packets;
 
 
-public class ConnectionIdlingPacket extends ConnectionWrapperPacket {}
+public class ConnectionIdlingPacket extends ConnectionWrapperPacket {
+  public static final PacketPool<ConnectionIdlingPacket> pool =
+    new PacketPool<>(ConnectionIdlingPacket::new, p -> p.conID = -1);
+}
@@ -22,22 +22,29 @@ package com.xpdustry.claj.common.packets;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.processor.Codec;
 
+
+@Codec
 public class ConnectionJoinPacket extends ConnectionWrapperPacket {
+  public static final PacketPool<ConnectionJoinPacket> pool = new PacketPool<>(ConnectionJoinPacket::new, p -> {
+    p.conID = -1;
+    p.roomId = -1;
+    p.addressHash = 0;
+  });
+
+  @Codec.Field
   public long roomId = -1;
+  @Codec.Field
   public long addressHash = 0;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    super.readImpl(read);
-    roomId = read.readLong();
-    addressHash = read.readLong();
+    ConnectionJoinPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    super.write(write);
-    write.writeLong(roomId);
-    write.writeLong(addressHash);
+    ConnectionJoinPacketCodec.write(this, write);
   }
 }
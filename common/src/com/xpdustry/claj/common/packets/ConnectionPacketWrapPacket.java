@@ -28,6 +28,12 @@ import arc.util.io.ByteBufferOutput;
 public class ConnectionPacketWrapPacket extends ConnectionWrapperPacket {
   /** Used to notify serializer to read/write the rest. MUST BE SET! */
   public static Serializer serializer;
+  public static final PacketPool<ConnectionPacketWrapPacket> pool = new PacketPool<>(ConnectionPacketWrapPacket::new, p -> {
+    p.conID = -1;
+    p.object = null;
+    p.raw = null;
+    p.isTCP = false;
+  });
 
   /** Decoded object received by the client. Should be handled by the serializer. */
   public Object object;
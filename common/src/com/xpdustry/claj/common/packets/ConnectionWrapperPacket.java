@@ -19,20 +19,32 @@
 
 package com.xpdustry.claj.common.packets;
 
+import java.nio.ByteBuffer;
+
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.processor.Codec;
+
 
+@Codec
 public abstract class ConnectionWrapperPacket extends DelayedPacket {
+  @Codec.Field
   public int conID = -1;
 
+  /** @return the connection id, read from the pending data if the packet is not decoded yet. */
+  public int peekConID() {
+    ByteBuffer data = pending();
+    return data != null && data.remaining() >= 4 ? data.getInt(data.position()) : conID;
+  }
+
   @Override
   protected void readImpl(ByteBufferInput read) {
-    conID = read.readInt();
+    ConnectionWrapperPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    write.writeInt(conID);
+    ConnectionWrapperPacketCodec.write(this, write);
   }
 }
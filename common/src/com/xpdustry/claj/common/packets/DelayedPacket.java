@@ -25,36 +25,74 @@ import arc.util.Threads;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.common.util.SharedBuffer;
+
 
 /**
- * Bufferize the data in {@link #READ} at {@link #read(ByteBufferInput)} call. <br>
- * Real reading will be done at {@link #handled()} call.
+ * Bufferize the data in a {@link SharedBuffer} slice at {@link #read(ByteBufferInput)} call. <br>
+ * Real reading will be done directly from the slice at {@link #handled()} call, then the slice is released.
  */
 public abstract class DelayedPacket implements Packet {
-  private static final byte[] NODATA = {};
-  private static final ThreadLocal<ByteBufferInput> READ =
-    Threads.local(() -> new ByteBufferInput(ByteBuffer.wrap(NODATA)));
+  private static final ByteBuffer NODATA = ByteBuffer.allocate(0);
+  private static final ThreadLocal<ByteBufferInput> READ = Threads.local(() -> new ByteBufferInput(NODATA));
+
+  private SharedBuffer.Slice DATA;
+  /** Cached packet id, {@code -1} if not yet known. */
+  private int ID = -1;
 
-  private byte[] DATA = NODATA;
+  @Override
+  public int packetId() {
+    int id = ID;
+    if (id == -1) ID = id = Packet.super.packetId();
+    return id;
+  }
+
+  @Override
+  public void packetId(int id) {
+    ID = id;
+  }
 
   @Override
   public final void read(ByteBufferInput read) {
-    DATA = new byte[read.buffer.remaining()];
-    read.readFully(DATA);
+    if (DATA != null) DATA.release();
+    DATA = SharedBuffer.copy(read.buffer);
   }
 
   @Override
   public final void handled() {
-    if (DATA == NODATA) return; // avoid double reading
+    SharedBuffer.Slice data = DATA;
+    if (data == null) return; // avoid double reading
+    DATA = null;
     ByteBufferInput read = READ.get();
-    if (read.buffer.capacity() < DATA.length)
-      read.buffer = ByteBuffer.allocate(DATA.length);
-    ((ByteBuffer)read.buffer.clear()).put(DATA).flip();
-    readImpl(read);
-    DATA = NODATA;
+    read.buffer = data.buffer;
+    try { readImpl(read); }
+    finally {
+      read.buffer = NODATA;
+      data.release();
+    }
+  }
+
+  /** @return the data waiting to be decoded, or {@code null} if already decoded. Must not be modified. */
+  protected ByteBuffer pending() {
+    SharedBuffer.Slice data = DATA;
+    return data == null ? null : data.buffer;
   }
 
   protected abstract void readImpl(ByteBufferInput read);
   @Override
   public abstract void write(ByteBufferOutput write);
+
+  /**
+   * Reads the optional id appended at the end of a request or its response, to correlate them. <br>
+   * Older versions ignore the remaining data, so this keeps compatibility.
+   * @return {@code -1} if not present.
+   */
+  protected static int readRequestId(ByteBufferInput read) {
+    return read.buffer.remaining() >= 4 ? read.readInt() : -1;
+  }
+
+  /** Writes the request id only if defined, see {@link #readRequestId(ByteBufferInput)}. */
+  protected static void writeRequestId(ByteBufferOutput write, int requestId) {
+    if (requestId != -1) write.writeInt(requestId);
+  }
 }
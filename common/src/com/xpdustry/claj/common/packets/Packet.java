@@ -23,6 +23,8 @@ import arc.net.Connection;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.common.ClajNet;
+
 
 /** Base packet of CLaJ protocol. Packets should be handled in the same thread. */
 public interface Packet {
@@ -40,6 +42,17 @@ public interface Packet {
     return (T)this;
   }
 
+  /**
+   * @return the unsigned id of the packet type, to index arrays of size {@link ClajNet#MAX_PACKETS},
+   *         or {@code -1} if not registered. Packets may cache it, else it's looked up at each call.
+   */
+  default int packetId() {
+    return ClajNet.indexOf(getClass());
+  }
+
+  /** Called by {@link ClajNet#newPacket(byte)} with the id of the packet, so it can be cached. */
+  default void packetId(int id) {}
+
   /** Called when handling the packet (after reading), in another thread. */
   default void handled() {}
 
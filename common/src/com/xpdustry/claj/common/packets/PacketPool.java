@@ -0,0 +1,86 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.packets;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import arc.func.Cons;
+import arc.func.Prov;
+import arc.struct.Seq;
+
+
+/**
+ * Thread-safe pool of recyclable packets, for high-frequency paths. <br>
+ * A packet must be freed once no longer used, usually just after being serialized by {@code sendTCP}/{@code sendUDP}.
+ * <p>
+ * In {@link #debug} mode, freed packets are tracked to detect double frees and uses after release,
+ * with {@link #check(Object)}.
+ */
+public class PacketPool<T> {
+  /** Detects double frees and uses after release. Can be enabled with {@code -Dclaj.pool.debug=true}. */
+  public static boolean debug = Boolean.getBoolean("claj.pool.debug");
+  /** Freed packets, only tracked in {@link #debug} mode. */
+  private static final Set<Object> released = Collections.synchronizedSet(
+    Collections.newSetFromMap(new IdentityHashMap<>()));
+
+  /** Maximum free packets kept. */
+  public int max = 64;
+  protected final Prov<T> cons;
+  protected final Cons<T> reset;
+  protected final Seq<T> free = new Seq<>(false, 16);
+
+  /** @param reset restores the default values of a packet when freed. */
+  public PacketPool(Prov<T> cons, Cons<T> reset) {
+    this.cons = cons;
+    this.reset = reset;
+  }
+
+  public T obtain() {
+    T packet = null;
+    synchronized (free) {
+      if (!free.isEmpty()) packet = free.pop();
+    }
+    if (packet == null) return cons.get();
+    if (debug) released.remove(packet);
+    return packet;
+  }
+
+  /** @throws IllegalStateException in {@link #debug} mode, if the packet was already freed. */
+  public void free(T packet) {
+    if (packet == null) return;
+    if (debug && !released.add(packet))
+      throw new IllegalStateException("Packet freed twice: " + packet.getClass().getSimpleName());
+    reset.get(packet);
+    boolean kept;
+    synchronized (free) {
+      kept = free.size < max;
+      if (kept) free.add(packet);
+    }
+    if (debug && !kept) released.remove(packet);
+  }
+
+  /** @throws IllegalStateException in {@link #debug} mode, if the packet is used after being freed. */
+  public static void check(Object packet) {
+    if (debug && released.contains(packet))
+      throw new IllegalStateException("Packet used after release: " + packet.getClass().getSimpleName());
+  }
+}
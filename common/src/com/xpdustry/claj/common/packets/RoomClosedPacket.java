@@ -23,18 +23,21 @@ import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
 import com.xpdustry.claj.common.status.CloseReason;
+import com.xpdustry.claj.processor.Codec;
 
 
+@Codec
 public class RoomClosedPacket extends DelayedPacket {
+  @Codec.Field
   public CloseReason reason;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    reason = CloseReason.all[read.readByte()];
+    RoomClosedPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    write.writeByte(reason.ordinal());
+    RoomClosedPacketCodec.write(this, write);
   }
 }
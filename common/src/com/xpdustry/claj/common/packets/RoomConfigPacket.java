@@ -22,26 +22,28 @@ package com.xpdustry.claj.common.packets;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.processor.Codec;
 
+
+@Codec
 public class RoomConfigPacket extends DelayedPacket {
   /** Whether the room is visible in the explorer. */
+  @Codec.Field
   public boolean isPublic;
   /** Whether a password is needed to join the room. This doens't means that the connection will be encrypted! */
+  @Codec.Field
   public boolean isProtected;
   /** The room password. It's a 4 digits pin code and should be {@code -1} if unset. */
+  @Codec.Field
   public short password;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    isPublic = read.readBoolean();
-    isProtected = read.readBoolean();
-    password = read.readShort();
+    RoomConfigPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    write.writeBoolean(isPublic);
-    write.writeBoolean(isProtected);
-    write.writeShort(password);
+    RoomConfigPacketCodec.write(this, write);
   }
 }
@@ -53,6 +53,6 @@ public class RoomCreationRequestPacket extends DelayedPacket {
   public void write(ByteBufferOutput write) {
     write.writeShort(0); //waste two bytes corresponding to utflen
     write.writeInt(version);
-    type.write(write.buffer);
+    type.write(write);
   }
 }
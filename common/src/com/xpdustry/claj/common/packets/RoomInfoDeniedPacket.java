@@ -19,7 +19,24 @@
 
 package com.xpdustry.claj.common.packets;
 
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
 
-public class RoomInfoDeniedPacket implements Packet {
+
+public class RoomInfoDeniedPacket extends DelayedPacket {
+  /** Without request id. */
   public static final RoomInfoDeniedPacket instance = new RoomInfoDeniedPacket();
+
+  /** Id of the {@link RoomInfoRequestPacket}, {@code -1} if not defined. */
+  public int requestId = -1;
+
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    requestId = readRequestId(read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    writeRequestId(write, requestId);
+  }
 }
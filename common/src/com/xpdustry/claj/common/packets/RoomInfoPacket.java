@@ -28,18 +28,27 @@ import com.xpdustry.claj.common.status.ClajType;
 public class RoomInfoPacket extends RoomStatePacket {
   public boolean isProtected;
   public ClajType type;
+  /** Id of the {@link RoomInfoRequestPacket}, {@code -1} if not defined. */
+  public int requestId = -1;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
     super.readImpl(read);
     isProtected = read.readBoolean();
     type = ClajType.read(read.buffer);
+    requestId = readRequestId(read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
     super.write(write);
     write.writeBoolean(isProtected);
-    type.write(write.buffer);
+    type.write(write);
+    writeRequestId(write, requestId);
+  }
+
+  @Override
+  public int byteSize() {
+    return super.byteSize() + 1 + 1 + type.typeSize() + (requestId != -1 ? 4 : 0);
   }
 }
@@ -19,5 +19,23 @@
 
 package com.xpdustry.claj.common.packets;
 
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
 
-public class RoomJoinAcceptedPacket extends RoomLinkPacket {}
+
+public class RoomJoinAcceptedPacket extends RoomLinkPacket {
+  /** Id of the {@link RoomJoinRequestPacket}, {@code -1} if not defined. */
+  public int requestId = -1;
+
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    super.readImpl(read);
+    requestId = readRequestId(read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    super.write(write);
+    writeRequestId(write, requestId);
+  }
+}
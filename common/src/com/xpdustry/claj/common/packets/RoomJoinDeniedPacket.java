@@ -27,16 +27,20 @@ import com.xpdustry.claj.common.status.RejectReason;
 
 public class RoomJoinDeniedPacket extends RoomLinkPacket {
   public RejectReason reason;
+  /** Id of the {@link RoomJoinRequestPacket}, {@code -1} if not defined. */
+  public int requestId = -1;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
     super.readImpl(read);
     reason = RejectReason.all[read.readByte()];
+    requestId = readRequestId(read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
     super.write(write);
     write.writeByte(reason.ordinal());
+    writeRequestId(write, requestId);
   }
 }
@@ -59,6 +59,6 @@ public class RoomJoinPacket extends RoomLinkPacket {
     super.write(write);
     write.writeBoolean(withPassword);
     write.writeShort(password);
-    type.write(write.buffer);
+    type.write(write);
   }
 }
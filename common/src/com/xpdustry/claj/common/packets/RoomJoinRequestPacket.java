@@ -19,6 +19,9 @@
 
 package com.xpdustry.claj.common.packets;
 
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
+
 
 /**
  * Only exists for compatibility with older versions. <br>
@@ -27,6 +30,22 @@ package com.xpdustry.claj.common.packets;
  * But no reply are sent, so no reason know what was wrong, if the provided values are invalid.
  */
 public class RoomJoinRequestPacket extends RoomJoinPacket {
+  /** Optional, echoed in the {@link RoomJoinAcceptedPacket} or {@link RoomJoinDeniedPacket}. */
+  public int requestId = -1;
+
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    super.readImpl(read);
+    requestId = readRequestId(read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    super.write(write);
+    writeRequestId(write, requestId);
+  }
+
+  /** Note that the {@link #requestId} is not copied. */
   public RoomJoinPacket toJoinPacket() {
     RoomJoinPacket p = new RoomJoinPacket();
     p.roomId = roomId;
@@ -22,18 +22,22 @@ package com.xpdustry.claj.common.packets;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.processor.Codec;
 
+
+@Codec
 public class RoomLinkPacket extends DelayedPacket {
   /** {@code -1} means no room. */
+  @Codec.Field
   public long roomId = -1;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
-    roomId = read.readLong();
+    RoomLinkPacketCodec.read(this, read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    write.writeLong(roomId);
+    RoomLinkPacketCodec.write(this, write);
   }
 }
@@ -32,9 +32,22 @@ public class RoomListPacket extends DelayedPacket {
   public long[] rooms;
   public boolean[] isProtected;
   public ByteBuffer[] states;
+  /** Id of the {@link RoomListRequestPacket}, {@code -1} if not defined. */
+  public int requestId = -1;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
+    readList(read);
+    requestId = readRequestId(read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    writeList(write);
+    writeRequestId(write, requestId);
+  }
+
+  protected void readList(ByteBufferInput read) {
     init(read.readInt());
 
     int length = ceilDiv(size, Byte.SIZE);
@@ -50,8 +63,7 @@ public class RoomListPacket extends DelayedPacket {
     }
   }
 
-  @Override
-  public void write(ByteBufferOutput write) {
+  protected void writeList(ByteBufferOutput write) {
     write.writeInt(size);
 
     BitSet bits = new BitSet(size);
@@ -69,11 +81,22 @@ public class RoomListPacket extends DelayedPacket {
       ByteBuffer state = states[i];
       if (state != null) {
         write.writeChar(state.remaining());
-        write.buffer.put(state);
+        // Don't write directly in the buffer, the output can be a stream
+        write.write(state.array(), state.arrayOffset() + state.position(), state.remaining());
+        state.position(state.limit());
       } else write.writeChar(0);
     }
   }
 
+  /** @return the encoded size of the packet, in bytes. */
+  public int byteSize() {
+    int total = 4 + ceilDiv(size, Byte.SIZE) + size * (8 + 2) + (requestId != -1 ? 4 : 0);
+    for (int i=0; i<size; i++) {
+      if (states[i] != null) total += states[i].remaining();
+    }
+    return total;
+  }
+
   public void init(int size) {
     this.size = size;
     rooms = new long[size];
@@ -84,4 +107,59 @@ public class RoomListPacket extends DelayedPacket {
   private static int ceilDiv(int a, int b) {
     return (a + b - 1) / b;
   }
+
+
+  /**
+   * Decodes a list progressively, while its bytes are received (e.g. from a stream). <br>
+   * The protection bits are in the header, and each room is self-delimited by its state length,
+   * so rooms can be decoded as soon as their record is complete.
+   */
+  public static class Reader {
+    /** The list being decoded. Only the {@link #decoded} first rooms are filled. */
+    public final RoomListPacket list = new RoomListPacket();
+    /** Number of decoded rooms. */
+    public int decoded;
+    protected int position;
+    protected boolean header;
+
+    /**
+     * @param data all the bytes received since the start of the list.
+     * @return the number of rooms newly decoded, ending at {@link #decoded}.
+     */
+    public int read(ByteBuffer data) {
+      int start = decoded;
+      ByteBuffer buff = data.duplicate();
+      buff.position(position);
+
+      if (!header) {
+        if (buff.remaining() < 4) return 0;
+        int size = buff.getInt(buff.position()), length = ceilDiv(size, Byte.SIZE);
+        if (buff.remaining() < 4 + length) return 0;
+        buff.getInt();
+        list.init(size);
+        BitSet bits = BitSet.valueOf((ByteBuffer)buff.slice().limit(length));
+        buff.position(buff.position() + length);
+        for (int i=0; i<size; i++) list.isProtected[i] = bits.get(i);
+        header = true;
+      }
+
+      // Record: room id (8), state length (2), state
+      while (decoded < list.size && buff.remaining() >= 8 + 2) {
+        int length = buff.getChar(buff.position() + 8);
+        if (buff.remaining() < 8 + 2 + length) break;
+        list.rooms[decoded] = buff.getLong();
+        buff.getChar();
+        byte[] state = new byte[length];
+        buff.get(state);
+        list.states[decoded++] = ByteBuffer.wrap(state);
+      }
+
+      position = buff.position();
+      return decoded - start;
+    }
+
+    public boolean isDone() {
+      return header && decoded >= list.size;
+    }
+  }
 }
@@ -28,15 +28,19 @@ import com.xpdustry.claj.common.status.ClajType;
 public class RoomListRequestPacket extends DelayedPacket {
   /** Implementation type to request the list from. Cannot be {@code null}. */
   public ClajType type;
+  /** Optional, echoed in the {@link RoomListPacket}. {@code -1} if not defined. */
+  public int requestId = -1;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
     type = ClajType.read(read.buffer);
+    requestId = readRequestId(read);
   }
 
   @Override
   public void write(ByteBufferOutput write) {
-    type.write(write.buffer);
+    type.write(write);
+    writeRequestId(write, requestId);
   }
 
 }
@@ -0,0 +1,54 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.packets;
+
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
+
+
+/**
+ * Changes of the public room list since the last update, sent to subscribed connections. <br>
+ * Inherited fields contains the added or changed rooms, and {@link #removed} the closed or hidden ones.
+ *
+ * @see RoomListSubscribePacket
+ */
+public class RoomListUpdatePacket extends RoomListPacket {
+  public long[] removed = {};
+
+  /** Updates are not requested, so no request id. */
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    readList(read);
+    removed = new long[read.readInt()];
+    for (int i=0; i<removed.length; i++) removed[i] = read.readLong();
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    writeList(write);
+    write.writeInt(removed.length);
+    for (long id : removed) write.writeLong(id);
+  }
+
+  @Override
+  public int byteSize() {
+    return super.byteSize() + 4 + removed.length * 8;
+  }
+}
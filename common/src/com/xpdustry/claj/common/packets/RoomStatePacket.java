@@ -39,8 +39,21 @@ public class RoomStatePacket extends RoomLinkPacket {
   @Override
   public void write(ByteBufferOutput write) {
     super.write(write);
+    if (state.remaining() > Character.MAX_VALUE)
+      throw new IllegalArgumentException("Room state too large: " + state.remaining() + " bytes");
     write.writeChar(state.remaining());
-    //write.write(state.array(), state.position(), state.remaining());
-    write.buffer.put(state);
+    // Don't write directly in the buffer, the output can be growable
+    if (state.hasArray()) write.write(state.array(), state.arrayOffset() + state.position(), state.remaining());
+    else {
+      byte[] bytes = new byte[state.remaining()];
+      state.duplicate().get(bytes);
+      write.write(bytes);
+    }
+    state.position(state.limit());
+  }
+
+  /** @return the encoded size of the packet, in bytes. */
+  public int byteSize() {
+    return 8 + 2 + state.remaining();
   }
 }
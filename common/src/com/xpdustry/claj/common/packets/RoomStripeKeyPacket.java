@@ -0,0 +1,51 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.packets;
+
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
+
+import com.xpdustry.claj.processor.Codec;
+
+
+/**
+ * Key allowing the room host to open striped connections to its room. <br>
+ * Each one must send a {@link RoomStripeJoinPacket} with this key and its index.
+ */
+@Codec
+public class RoomStripeKeyPacket extends DelayedPacket {
+  @Codec.Field
+  public long roomId = -1;
+  @Codec.Field
+  public long key;
+  /** Number of connections granted by the server, including the host. {@code 1} means no stripes. */
+  @Codec.Field
+  public int count;
+
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    RoomStripeKeyPacketCodec.read(this, read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    RoomStripeKeyPacketCodec.write(this, write);
+  }
+}
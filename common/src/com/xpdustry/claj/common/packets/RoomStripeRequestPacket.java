@@ -0,0 +1,44 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.packets;
+
+import arc.util.io.ByteBufferInput;
+import arc.util.io.ByteBufferOutput;
+
+import com.xpdustry.claj.processor.Codec;
+
+
+/** Sent by the room host to open more connections to its room, answered by a {@link RoomStripeKeyPacket}. */
+@Codec
+public class RoomStripeRequestPacket extends DelayedPacket {
+  /** Total number of connections wanted, including the host. */
+  @Codec.Field
+  public int count;
+
+  @Override
+  protected void readImpl(ByteBufferInput read) {
+    RoomStripeRequestPacketCodec.read(this, read);
+  }
+
+  @Override
+  public void write(ByteBufferOutput write) {
+    RoomStripeRequestPacketCodec.write(this, write);
+  }
+}
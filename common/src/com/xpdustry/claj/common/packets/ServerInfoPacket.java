@@ -22,9 +22,17 @@ package com.xpdustry.claj.common.packets;
 import arc.util.io.ByteBufferInput;
 import arc.util.io.ByteBufferOutput;
 
+import com.xpdustry.claj.common.status.AdmissionHint;
+import com.xpdustry.claj.common.status.ServerLoad;
+
 
 public class ServerInfoPacket extends DelayedPacket {
+  /** Size of the optional load part. */
+  public static final int loadSize = 4 + 4 + 4 + 4 + 1;
+
   public int version = -1;
+  /** Optional, {@code null} if the relay doesn't advertise its load. */
+  public ServerLoad load;
 
   @Override
   protected void readImpl(ByteBufferInput read) {
@@ -32,10 +40,26 @@ public class ServerInfoPacket extends DelayedPacket {
     // This can be used to determine whether this is an old CLaJ server or not.
     // Because on older versions, no discovery was configured.
     version = read.buffer.hasRemaining() ? read.readInt() : -1;
+    // Load is appended after the version, so older clients will just ignore it.
+    if (read.buffer.remaining() < loadSize) return;
+    load = new ServerLoad();
+    load.rooms = read.readInt();
+    load.connections = read.readInt();
+    load.upload = read.readFloat();
+    load.download = read.readFloat();
+    int admission = read.readByte();
+    load.admission = admission >= 0 && admission < AdmissionHint.all.length ?
+                     AdmissionHint.all[admission] : AdmissionHint.accepting;
   }
 
   @Override
   public void write(ByteBufferOutput write) {
     write.writeInt(version);
+    if (load == null) return;
+    write.writeInt(load.rooms);
+    write.writeInt(load.connections);
+    write.writeFloat(load.upload);
+    write.writeFloat(load.download);
+    write.writeByte(load.admission.ordinal());
   }
 }
@@ -0,0 +1,33 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.status;
+
+
+/** Hint given by a relay in its discovery response, about whether it's a good choice to create a room. */
+public enum AdmissionHint {
+  /** The relay accepts new rooms. */
+  accepting,
+  /** The relay still accepts new rooms, but is already heavily loaded. */
+  busy,
+  /** The relay is closing and will reject new rooms. */
+  closing;
+
+  public static final AdmissionHint[] all = values();
+}
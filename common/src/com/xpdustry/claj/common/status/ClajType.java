@@ -23,6 +23,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import arc.util.Strings;
+import arc.util.io.ByteBufferOutput;
 
 
 /** Should be in ASCII (to avoid encoding errors) and must be {@code 16} <u>BYTES</u> max.  */
@@ -89,6 +90,12 @@ public class ClajType {
     out.put(rawType);
   }
 
+  /** Writes through the output, instead of its buffer, so a growable output can expand it. */
+  public void write(ByteBufferOutput out) {
+    out.writeByte(rawType.length);
+    out.write(rawType);
+  }
+
   /** @see #decode(byte[]) */
   public static ClajType read(ByteBuffer in) {
     byte size = in.get();
@@ -25,11 +25,28 @@ public class ServerState {
   public final int port;
   public final int version;
   public final int ping;
+  /** Load advertised by the relay, or {@code null} if the relay doesn't advertise it. */
+  public final ServerLoad load;
+  /** Average difference between consecutive ping samples, in ms. {@code 0} if only one sample was received. */
+  public final float jitter;
+  /** Ratio of lost ping samples, from {@code 0} to {@code 1}. */
+  public final float loss;
 
   public ServerState(String address, int port, int version, int ping) {
+    this(address, port, version, ping, null);
+  }
+
+  public ServerState(String address, int port, int version, int ping, ServerLoad load) {
+    this(address, port, version, ping, load, 0, 0);
+  }
+
+  public ServerState(String address, int port, int version, int ping, ServerLoad load, float jitter, float loss) {
     this.address = address;
     this.port = port;
     this.version = version;
     this.ping = ping;
+    this.load = load;
+    this.jitter = jitter;
+    this.loss = loss;
   }
 }
@@ -31,7 +31,11 @@ import arc.util.io.ReusableByteOutStream;
 /**
  * Writes data into a {@link ByteArrayOutputStream},
  * optionally compressible and maintains a {@link ByteBuffer} to the data.
+ *
+ * @deprecated kept for compatibility, use {@link GrowableBufferOutput} instead,
+ *             and {@link com.xpdustry.claj.common.net.stream.StreamPools#deflate} for the compression.
   */
+@Deprecated
 public class ByteArrayBufferOutput extends ByteBufferOutput {
   public final ReusableByteOutStream back;
   public final DataOutputStream stream;
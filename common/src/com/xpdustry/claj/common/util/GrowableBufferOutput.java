@@ -0,0 +1,193 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.util;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+import arc.util.io.ByteBufferOutput;
+
+import com.xpdustry.claj.common.net.stream.StreamPools;
+
+
+/**
+ * {@link ByteBufferOutput} writing directly into a growable heap or direct buffer.
+ * The capacity is doubled when needed, and heap buffers are taken from {@link StreamPools}. <br>
+ * Compression is not handled here, the written bytes can be given to {@link StreamPools#deflate} afterward.
+ */
+public class GrowableBufferOutput extends ByteBufferOutput {
+  public final boolean direct;
+
+  public GrowableBufferOutput() { this(512, false); }
+  public GrowableBufferOutput(int initialCapacity) { this(initialCapacity, false); }
+  public GrowableBufferOutput(int initialCapacity, boolean direct) {
+    super(allocate(initialCapacity, direct));
+    this.direct = direct;
+  }
+
+  /** Makes sure that {@code bytes} can be written, by at least doubling the capacity if needed. */
+  public void ensureCapacity(int bytes) {
+    if (buffer.remaining() >= bytes) return;
+    int needed = buffer.position() + bytes;
+    if (needed < 0) throw new IllegalStateException("Buffer size limit exceeded");
+    ByteBuffer next = allocate(Math.max(needed, buffer.capacity() << 1), direct);
+    buffer.flip();
+    next.put(buffer);
+    release(buffer);
+    buffer = next;
+  }
+
+  /** @return the number of bytes written. */
+  public int size() {
+    return buffer.position();
+  }
+
+  /** @return the backing array of a heap buffer. Only the first {@link #size()} bytes are valid. */
+  public byte[] array() {
+    if (direct) throw new UnsupportedOperationException("Direct buffer has no array");
+    return buffer.array();
+  }
+
+  /** Discards the written bytes, while keeping the buffer. */
+  public void reset() {
+    buffer.clear();
+  }
+
+  /** Gives back the buffer to the pool. The output, or the {@link #array()}, can no longer be used. */
+  public void free() {
+    release(buffer);
+    buffer = null;
+  }
+
+  @Override
+  public void write(int i) {
+    ensureCapacity(1);
+    super.write(i);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    ensureCapacity(b.length);
+    super.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    super.write(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    ensureCapacity(1);
+    super.writeBoolean(v);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    ensureCapacity(1);
+    super.writeByte(v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    super.writeShort(v);
+  }
+
+  @Override
+  public void writeChar(int v) {
+    ensureCapacity(2);
+    super.writeChar(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    super.writeInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    ensureCapacity(8);
+    super.writeLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    ensureCapacity(4);
+    super.writeFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    ensureCapacity(8);
+    super.writeDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    int len = s.length();
+    ensureCapacity(len);
+    for (int i=0; i<len; i++) buffer.put((byte)s.charAt(i));
+  }
+
+  @Override
+  public void writeChars(String s) {
+    int len = s.length();
+    ensureCapacity(len * 2);
+    for (int i=0; i<len; i++) buffer.putChar(s.charAt(i));
+  }
+
+  /** Same encoding as {@link java.io.DataOutputStream#writeUTF(String)}. */
+  @Override
+  public void writeUTF(String s) {
+    int len = s.length(), utflen = len;
+    for (int i=0; i<len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80 || c == 0) utflen += c >= 0x800 ? 2 : 1;
+    }
+    if (utflen > 65535)
+      throw new RuntimeException(new UTFDataFormatException("Encoded string too long: " + utflen + " bytes"));
+
+    ensureCapacity(utflen + 2);
+    buffer.putChar((char)utflen);
+    for (int i=0; i<len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80 && c != 0) buffer.put((byte)c);
+      else if (c >= 0x800) {
+        buffer.put((byte)(0xE0 | ((c >> 12) & 0x0F)));
+        buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte)(0x80 | (c & 0x3F)));
+      } else {
+        buffer.put((byte)(0xC0 | ((c >> 6) & 0x1F)));
+        buffer.put((byte)(0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  protected static ByteBuffer allocate(int capacity, boolean direct) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.wrap(StreamPools.obtain(capacity));
+  }
+
+  protected static void release(ByteBuffer buffer) {
+    if (buffer != null && !buffer.isDirect()) StreamPools.free(buffer.array());
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.common.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xpdustry.claj.common.net.stream.StreamPools;
+
+
+/**
+ * Pooled buffer filled by one thread and shared by several slices, with reference counting. <br>
+ * Each thread appends to its current buffer until full, then takes a new one from {@link StreamPools}.
+ * The buffer is given back to the pool once the thread moved to another one and all slices are released.
+ * <p>
+ * A slice that is never released only prevents its buffer from being pooled again, it's not a leak.
+ */
+public class SharedBuffer {
+  /** Size of the buffers shared by slices. Bigger data get their own buffer. */
+  public static int bufferSize = 16384;
+
+  private static final ThreadLocal<SharedBuffer> current = new ThreadLocal<>();
+
+  private final byte[] data;
+  private final AtomicInteger refs = new AtomicInteger(1); // the filling thread
+  private int position;
+
+  protected SharedBuffer(int size) {
+    data = StreamPools.obtain(size);
+  }
+
+  /**
+   * Copies the remaining bytes of {@code from} into the buffer of the current thread.
+   * The returned slice must be released with {@link Slice#release()} once no longer used.
+   */
+  public static Slice copy(ByteBuffer from) {
+    int length = from.remaining();
+    SharedBuffer buffer = current.get();
+
+    if (buffer == null || buffer.data.length - buffer.position < length) {
+      if (buffer != null) buffer.release();
+      buffer = new SharedBuffer(Math.max(bufferSize, length));
+      current.set(buffer);
+    }
+
+    int offset = buffer.position;
+    from.get(buffer.data, offset, length);
+    buffer.position += length;
+    buffer.refs.incrementAndGet();
+    return new Slice(buffer, ByteBuffer.wrap(buffer.data, offset, length).slice());
+  }
+
+  protected void release() {
+    if (refs.decrementAndGet() == 0) StreamPools.free(data);
+  }
+
+
+  /** View of a part of a {@link SharedBuffer}. */
+  public static class Slice {
+    private SharedBuffer owner;
+    /** Data of the slice, must not be used after {@link #release()}. */
+    public final ByteBuffer buffer;
+
+    protected Slice(SharedBuffer owner, ByteBuffer buffer) {
+      this.owner = owner;
+      this.buffer = buffer;
+    }
+
+    /** Releases the slice. Does nothing if already released. */
+    public synchronized void release() {
+      if (owner == null) return;
+      owner.release();
+      owner = null;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.xpdustry.claj.common.packets;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import arc.util.io.ByteBufferInput;
+
+import com.xpdustry.claj.common.status.ClajType;
+import com.xpdustry.claj.common.util.GrowableBufferOutput;
+
+
+class RoomInfoPacketTest {
+  /** Same initial capacity as the stream sender, so the state must grow the buffer. */
+  static final int initialCapacity = 8192;
+
+  @Test
+  void writesLargeStateThroughGrowableOutput() {
+    byte[] state = new byte[Character.MAX_VALUE]; // the largest state that can be encoded, just under 64 KiB
+    for (int i=0; i<state.length; i++) state[i] = (byte)i;
+
+    RoomInfoPacket packet = new RoomInfoPacket();
+    packet.roomId = 42;
+    packet.isProtected = true;
+    packet.type = new ClajType("test-type");
+    packet.requestId = 7;
+    packet.state = ByteBuffer.wrap(state);
+
+    // Computed before writing, as it consumes the state
+    int size = packet.byteSize();
+    assertEquals(8 + 2 + state.length + 1 + 1 + packet.type.typeSize() + 4, size);
+
+    GrowableBufferOutput out = new GrowableBufferOutput(initialCapacity);
+    packet.write(out);
+    assertEquals(size, out.size());
+
+    RoomInfoPacket read = new RoomInfoPacket();
+    read.read(new ByteBufferInput(ByteBuffer.wrap(out.array(), 0, out.size())));
+    read.handled();
+    out.free();
+
+    assertEquals(42, read.roomId);
+    assertTrue(read.isProtected);
+    assertEquals(packet.type, read.type);
+    assertEquals(7, read.requestId);
+    assertEquals(ByteBuffer.wrap(state), read.state);
+  }
+}
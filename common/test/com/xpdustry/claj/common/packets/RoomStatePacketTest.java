@@ -0,0 +1,70 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.xpdustry.claj.common.packets;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import arc.util.io.ByteBufferInput;
+
+import com.xpdustry.claj.common.util.GrowableBufferOutput;
+
+
+class RoomStatePacketTest {
+  /** Same initial capacity as the stream sender, so the state must grow the buffer. */
+  static final int initialCapacity = 8192;
+
+  @Test
+  void writesStateThroughGrowableOutput() {
+    byte[] state = new byte[initialCapacity * 2];
+    for (int i=0; i<state.length; i++) state[i] = (byte)i;
+
+    RoomStatePacket packet = new RoomStatePacket();
+    packet.roomId = 42;
+    packet.state = ByteBuffer.wrap(state);
+    int size = packet.byteSize();
+
+    GrowableBufferOutput out = new GrowableBufferOutput(initialCapacity);
+    packet.write(out);
+    assertEquals(8 + 2 + state.length, size);
+    assertEquals(size, out.size());
+
+    RoomStatePacket read = new RoomStatePacket();
+    read.read(new ByteBufferInput(ByteBuffer.wrap(out.array(), 0, out.size())));
+    read.handled();
+    out.free();
+
+    assertEquals(42, read.roomId);
+    assertEquals(ByteBuffer.wrap(state), read.state);
+  }
+
+  @Test
+  void rejectsStateOverEncodableSize() {
+    RoomStatePacket packet = new RoomStatePacket();
+    packet.state = ByteBuffer.allocate(64 * 1024);
+    GrowableBufferOutput out = new GrowableBufferOutput(initialCapacity);
+    assertThrows(IllegalArgumentException.class, () -> packet.write(out));
+    out.free();
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Generates a final {@code <Class>Codec} class, in the same package, reading and writing the {@link Field} fields
+ * of the annotated class and its superclasses, in declaration order and starting by the superclasses. <br>
+ * Supported types are primitives and enums, written as their ordinal in one byte.
+ * <p>
+ * The generated codec has a {@code SIZE} constant, the exact size of the encoded fields,
+ * and static {@code read(packet, ByteBufferInput)} and {@code write(packet, ByteBufferOutput)} methods
+ * working directly on the underlying buffers.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Codec {
+  /** Marks a field to be encoded by the {@link Codec} of the class. The field must not be private nor final. */
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(ElementType.FIELD)
+  @interface Field {}
+}
@@ -0,0 +1,186 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+
+/** Generates the codecs of classes annotated with {@link Codec}. */
+public class CodecProcessor extends AbstractProcessor {
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    Set<String> types = new LinkedHashSet<>();
+    types.add(Codec.class.getCanonicalName());
+    types.add(Codec.Field.class.getCanonicalName());
+    return types;
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    for (TypeElement type : ElementFilter.typesIn(round.getElementsAnnotatedWith(Codec.class))) {
+      try { generate(type); }
+      catch (IllegalArgumentException e) { error(type, e.getMessage()); }
+      catch (IOException e) { error(type, "Unable to write codec: " + e); }
+    }
+    return true;
+  }
+
+  protected void generate(TypeElement type) throws IOException {
+    if (type.getKind() != ElementKind.CLASS) throw new IllegalArgumentException("@Codec must be on a class");
+
+    List<VariableElement> fields = collectFields(type);
+    String pack = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    String target = type.getSimpleName().toString(), name = target + "Codec";
+    StringBuilder constants = new StringBuilder(), read = new StringBuilder(), write = new StringBuilder(),
+                  slowWrite = new StringBuilder();
+    int size = 0;
+
+    for (VariableElement field : fields) {
+      String id = field.getSimpleName().toString();
+      TypeMirror mirror = field.asType();
+
+      if (mirror.getKind() == TypeKind.DECLARED &&
+          ((DeclaredType)mirror).asElement().getKind() == ElementKind.ENUM) {
+        String enumType = ((TypeElement)((DeclaredType)mirror).asElement()).getQualifiedName().toString();
+        constants.append("  private static final ").append(enumType).append("[] ").append(id).append("Values = ")
+                 .append(enumType).append(".values();\n");
+        read.append("    p.").append(id).append(" = ").append(id).append("Values[b.get()];\n");
+        write.append("      b.put((byte)p.").append(id).append(".ordinal());\n");
+        slowWrite.append("      write.writeByte(p.").append(id).append(".ordinal());\n");
+        size += 1;
+        continue;
+      }
+
+      Primitive prim = Primitive.of(mirror.getKind());
+      if (prim == null) throw new IllegalArgumentException("Unsupported type " + mirror + " of field " + id);
+      read.append("    p.").append(id).append(" = ").append(prim.read).append(";\n");
+      write.append("      b.").append(String.format(prim.write, "p." + id)).append(";\n");
+      slowWrite.append("      write.").append(String.format(prim.slowWrite, "p." + id)).append(";\n");
+      size += prim.size;
+    }
+
+    StringBuilder out = new StringBuilder();
+    out.append("package ").append(pack).append(";\n\n")
+       .append("import java.nio.ByteBuffer;\n\n")
+       .append("import arc.util.io.ByteBufferInput;\n")
+       .append("import arc.util.io.ByteBufferOutput;\n\n\n")
+       .append("/** Generated by {@code ").append(getClass().getSimpleName()).append("} from {@link ")
+       .append(target).append("}, do not edit. */\n")
+       .append("public final class ").append(name).append(" {\n")
+       .append("  /** Exact size of the encoded fields. */\n")
+       .append("  public static final int SIZE = ").append(size).append(";\n")
+       .append(constants).append('\n')
+       .append("  private ").append(name).append("() {}\n\n")
+       .append("  public static void read(").append(target).append(" p, ByteBufferInput read) {\n")
+       .append(fields.isEmpty() ? "" : "    ByteBuffer b = read.buffer;\n").append(read).append("  }\n\n")
+       .append("  /** Writes directly into the buffer if it has enough space, else through the output, to let it grow. */\n")
+       .append("  public static void write(").append(target).append(" p, ByteBufferOutput write) {\n");
+    if (!fields.isEmpty()) {
+      out.append("    ByteBuffer b = write.buffer;\n")
+         .append("    if (b.remaining() >= SIZE) {\n").append(write)
+         .append("    } else {\n").append(slowWrite)
+         .append("    }\n");
+    }
+    out.append("  }\n")
+       .append("}\n");
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(pack + "." + name, type).openWriter()) {
+      writer.write(out.toString());
+    }
+  }
+
+  /** @return the annotated fields of the class and its superclasses, starting by the top superclass. */
+  protected List<VariableElement> collectFields(TypeElement type) {
+    List<TypeElement> hierarchy = new ArrayList<>();
+    for (TypeElement current = type; current != null;) {
+      hierarchy.add(0, current);
+      TypeMirror parent = current.getSuperclass();
+      current = parent.getKind() == TypeKind.DECLARED ? (TypeElement)((DeclaredType)parent).asElement() : null;
+    }
+
+    List<VariableElement> fields = new ArrayList<>();
+    for (TypeElement current : hierarchy) {
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        if (field.getAnnotation(Codec.Field.class) == null) continue;
+        Set<Modifier> mods = field.getModifiers();
+        if (mods.contains(Modifier.PRIVATE) || mods.contains(Modifier.FINAL) || mods.contains(Modifier.STATIC))
+          throw new IllegalArgumentException("Field " + field.getSimpleName() + " must not be private, final or static");
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  protected void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+
+  /** Accessors of primitive types. {@code write} and {@code slowWrite} are formats taking the value. */
+  protected enum Primitive {
+    BOOLEAN(TypeKind.BOOLEAN, 1, "b.get() != 0", "put((byte)(%s ? 1 : 0))", "writeBoolean(%s)"),
+    BYTE(TypeKind.BYTE, 1, "b.get()", "put(%s)", "writeByte(%s)"),
+    SHORT(TypeKind.SHORT, 2, "b.getShort()", "putShort(%s)", "writeShort(%s)"),
+    CHAR(TypeKind.CHAR, 2, "b.getChar()", "putChar(%s)", "writeChar(%s)"),
+    INT(TypeKind.INT, 4, "b.getInt()", "putInt(%s)", "writeInt(%s)"),
+    LONG(TypeKind.LONG, 8, "b.getLong()", "putLong(%s)", "writeLong(%s)"),
+    FLOAT(TypeKind.FLOAT, 4, "b.getFloat()", "putFloat(%s)", "writeFloat(%s)"),
+    DOUBLE(TypeKind.DOUBLE, 8, "b.getDouble()", "putDouble(%s)", "writeDouble(%s)");
+
+    final TypeKind kind;
+    final int size;
+    final String read, write, slowWrite;
+
+    Primitive(TypeKind kind, int size, String read, String write, String slowWrite) {
+      this.kind = kind;
+      this.size = size;
+      this.read = read;
+      this.write = write;
+      this.slowWrite = slowWrite;
+    }
+
+    static Primitive of(TypeKind kind) {
+      for (Primitive prim : values()) {
+        if (prim.kind == kind) return prim;
+      }
+      return null;
+    }
+  }
+}
@@ -38,6 +38,17 @@ public class ClajConfig {
   public static int spamLimit = 300;
   /** Limit of room join requests per minute. The server will act as if the room had not been found. */
   public static int joinLimit = 30;
+  /**
+   * Maximum number of connections a room host can open to its room, including itself. <br>
+   * Clients are spread between them to not share the same TCP stream. {@code 1} to disable.
+   */
+  public static int maxStripes = 4;
+  /** Minimum delay between two room list updates sent to a subscribed connection, in ms. */
+  public static int subscriptionInterval = 2000;
+  /** Whether to advertise the relay load (rooms, connections, network speed) in discovery responses. */
+  public static boolean advertiseLoad = true;
+  /** Number of rooms from which the relay will advertise itself as busy. {@code 0} to disable. */
+  public static int busyThreshold = 0;
   /**
    * Whether to accept or not clients who attempt to join a room without specifying their CLaJ implementation. <br>
    * Setting this to {@code false} will break compatibility with older CLaJ versions.
@@ -64,6 +75,10 @@ public class ClajConfig {
     debug = settings.getBool("debug", false);
     spamLimit = settings.getInt("spam-limit", 300);
     joinLimit = settings.getInt("join-limit", 20);
+    maxStripes = settings.getInt("max-stripes", 4);
+    subscriptionInterval = settings.getInt("subscription-interval", 2000);
+    advertiseLoad = settings.getBool("advertise-load", true);
+    busyThreshold = settings.getInt("busy-threshold", 0);
     warnDeprecated = settings.getBool("warn-deprecated", true);
     warnClosing = settings.getBool("warn-closing", true);
     blacklist = settings.get("blacklist", ObjectSet.class, String.class, ObjectSet::new);
@@ -78,6 +93,10 @@ public class ClajConfig {
     settings.put("debug", debug);
     settings.put("spam-limit", spamLimit);
     settings.put("join-limit", joinLimit);
+    settings.put("max-stripes", maxStripes);
+    settings.put("subscription-interval", subscriptionInterval);
+    settings.put("advertise-load", advertiseLoad);
+    settings.put("busy-threshold", busyThreshold);
     settings.put("warn-deprecated", warnDeprecated);
     settings.put("warn-closing", warnClosing);
     settings.put("blacklist", String.class, blacklist.toSeq());
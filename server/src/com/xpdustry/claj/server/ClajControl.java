@@ -30,6 +30,8 @@ import arc.util.Log;
 import arc.util.OS;
 import arc.util.Threads;
 
+import com.xpdustry.claj.common.net.PacketQueue;
+import com.xpdustry.claj.common.net.stream.StreamReceiver;
 import com.xpdustry.claj.common.util.Strings;
 import com.xpdustry.claj.server.plugin.Plugins;
 import com.xpdustry.claj.server.util.NetworkSpeed;
@@ -122,6 +124,16 @@ public class ClajControl extends CommandHandler implements ApplicationListener {
                  Strings.formatBytes((long)net.uploadSpeed()), Strings.formatBytes((long)net.downloadSpeed()),
                  Strings.formatBytes(net.totalUpload()), Strings.formatBytes(net.totalDownload()));
       } else Log.info("Network speed calculator is disabled.");
+      Log.info("Streams: @ partial (@ buffered). Total: @ completed / @ expired / @ rejected.",
+               StreamReceiver.activeStreams.get(), Strings.formatBytes(StreamReceiver.bufferedBytes.get()),
+               StreamReceiver.completedStreams.get(), StreamReceiver.expiredStreams.get(),
+               StreamReceiver.rejectedStreams.get());
+      PacketQueue<?> queue = ClajVars.relay.receiver.queue();
+      if (queue != null) {
+        Log.info("Receive queue: @ pending (@ max). Last drain: @ packets in @ms (@ms max). @ dropped.",
+                 queue.size(), queue.maxDepth, queue.lastDrainCount, Strings.fixed(queue.lastDrainTime / 1e6f, 2),
+                 Strings.fixed(queue.maxDrainTime / 1e6f, 2), queue.dropped.get());
+      }
 
       if (ClajVars.relay.rooms.isEmpty()) {
         Log.info("No created rooms.");
@@ -207,6 +219,10 @@ public class ClajControl extends CommandHandler implements ApplicationListener {
       for (ClajRoom r : ClajVars.relay.rooms.values()) {
         Log.info("&lk|&fr Room @: [@ client" + (r.clients.isEmpty() ? "" : "s") + ']', r.sid, r.clients.size + 1);
         Log.info("&lk| |&fr [H] Connection @&fr - @", r.host.sid, r.host.address);
+        for (int i=1; i<r.stripes.length; i++) {
+          if (r.stripes[i] != null)
+            Log.info("&lk| |&fr [S@] Connection @&fr - @", i, r.stripes[i].sid, r.stripes[i].address);
+        }
         for (ClajConnection c : r.clients.values())
           Log.info("&lk| |&fr [C] Connection @&fr - @", c.sid, c.address);
         Log.info("&lk|&fr");
@@ -105,6 +105,18 @@ public class ClajEvents {
       this.room = room;
     }
   }
+  /** When a striped connection of the room host joined its room. */
+  public static class RoomStripeJoinedEvent {
+    public final ClajConnection connection;
+    public final ClajRoom room;
+    public final int index;
+
+    public RoomStripeJoinedEvent(ClajConnection connection, ClajRoom room, int index) {
+      this.connection = connection;
+      this.room = room;
+      this.index = index;
+    }
+  }
 
   public static class RoomCreationRejectedEvent {
     /** the connection that tried to create the room */
@@ -24,6 +24,7 @@ import java.io.UncheckedIOException;
 import java.net.BindException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
+import java.security.SecureRandom;
 
 import arc.ApplicationListener;
 import arc.Core;
@@ -32,6 +33,7 @@ import arc.math.Mathf;
 import arc.net.*;
 import arc.struct.*;
 import arc.util.*;
+import arc.util.io.ByteBufferOutput;
 
 import com.xpdustry.claj.common.ClajNet;
 import com.xpdustry.claj.common.ClajPackets.*;
@@ -62,8 +64,19 @@ public class ClajRelay extends Server implements ApplicationListener {
   //TODO: make the room host calculate the idle instead of the server, this will save bandwidth.
   /** Keeps a cache of already notified idling connection, to avoid packet spamming. */
   private final IntSet notifiedIdle = new IntSet();
-  /** As server version will not change at runtime, cache the serialized packet to avoid re-serialization. */
-  private ByteBuffer versionBuff;
+  /**
+   * Cache of the serialized discovery response, to avoid re-serialization at each discovery request. <br>
+   * The advertised load is refreshed at most once per {@link #infoRefreshInterval}.
+   */
+  private final ByteBuffer infoBuff = ByteBuffer.allocate(1 + 4 + ServerInfoPacket.loadSize);
+  private final ByteBufferOutput infoOutput = new ByteBufferOutput(infoBuff);
+  private final ServerInfoPacket infoPacket = new ServerInfoPacket();
+  private final ServerLoad infoLoad = new ServerLoad();
+  private long infoUpdated = -1;
+  /** Delay between two refreshes of the advertised load, in ms. */
+  public static final int infoRefreshInterval = 1000;
+  /** Used for stripe keys, which must not be guessable. */
+  private final SecureRandom keyRandom = new SecureRandom();
 
   protected final ServerReceiver receiver;
   /** To easily get the room of a connection. */
@@ -72,21 +85,24 @@ public class ClajRelay extends Server implements ApplicationListener {
   public final LongMap<ClajRoom> rooms = new LongMap<>();
   /** Read/Write speed. */
   public final NetworkSpeed networkSpeed;
+  /** Connections subscribed to the public room list. */
+  public final ClajSubscriptions subscriptions;
 
   public ClajRelay() { this(null); }
   public ClajRelay(NetworkSpeed speedCalculator) {
     super(32768, 32768, new ClajServerSerializer(speedCalculator));
     networkSpeed = speedCalculator;
-    receiver = new ServerReceiver(this, Core.app::post);
+    // Drained in place by the network thread, so forwarded packets never wait for the next frame
+    receiver = new ServerReceiver(this, Runnable::run);
+    subscriptions = new ClajSubscriptions(this);
     //TODO: very useful?
     StaleConnectionsCleaner.init(this, 10 * 1000,
-      RoomCreationRequestPacket.class, RoomJoinRequestPacket.class, RoomJoinPacket.class);
+      RoomCreationRequestPacket.class, RoomJoinRequestPacket.class, RoomJoinPacket.class,
+      RoomListSubscribePacket.class, RoomStripeJoinPacket.class,
+      // Sent by persistent pinger sessions
+      RoomListRequestPacket.class, RoomInfoRequestPacket.class);
 
-    setDiscoveryHandler((c, r) -> {
-      if (versionBuff == null)
-        versionBuff = ByteBuffer.allocate(5).put(ClajNet.id).putInt(ClajVars.version.majorVersion);
-      r.respond((ByteBuffer)versionBuff.rewind());
-    });
+    setDiscoveryHandler((c, r) -> r.respond(serverInfo()));
 
     receiver.setFilter(new NetListenerFilter() {
       @Override
@@ -143,7 +159,7 @@ public class ClajRelay extends Server implements ApplicationListener {
         notifiedIdle.remove(con.id);
         ClajRoom room = find(con); // Not thread-safe but shouldn't be a problem
         // Simple packet spam protection, ignored for room hosts
-        boolean isRated = ClajConfig.spamLimit > 0 && (room == null || !room.isHost(con)) &&
+        boolean isRated = ClajConfig.spamLimit > 0 && (room == null || !room.isUplink(con)) &&
                           !con.packetRate.allow(3000L, ClajConfig.spamLimit);
 
         if (isRated) {
@@ -182,14 +198,19 @@ public class ClajRelay extends Server implements ApplicationListener {
       if (room == null || con == null) return;
 
       conToRoom.remove(con.id);
+      boolean isStripe = room.isStripe(con);
       room.disconnected(con, p.reason);
       // Remove the room if it was the host
       if (room.isHost(con)) {
         for (ClajConnection cc : room.clients.values()) conToRoom.remove(cc.id);
+        for (ClajConnection cc : room.stripes) {
+          if (cc != null) conToRoom.remove(cc.id);
+        }
         rooms.remove(room.id);
         Log.info("Room @ closed because connection @ (the host) has disconnected.", room.sid, con.sid);
         Events.fire(new RoomClosedEvent(room));
-      } else Log.info("Connection @ left the room @.", con.sid, room.sid);
+      } else if (isStripe) Log.info("Stripe @ of room @ has disconnected, closing its clients.", con.sid, room.sid);
+      else Log.info("Connection @ left the room @.", con.sid, room.sid);
     });
     receiver.handle(Idle.class, (c, p) -> {
       ClajRoom room = find(c);
@@ -232,6 +253,43 @@ public class ClajRelay extends Server implements ApplicationListener {
       Log.info("Room @ created by connection @.", room.sid, con.sid);
       Events.fire(new RoomCreatedEvent(room));
     });
+    receiver.handle(RoomStripeRequestPacket.class, (c, p) -> {
+      ClajConnection con = toClajCon(c);
+      ClajRoom room = find(c);
+
+      if (checkRoomHost(con, room, MessageType.configureDenied,
+                        "Connection @ tried to open stripes for the room @ but is not the host.")) return;
+      RoomStripeKeyPacket key = new RoomStripeKeyPacket();
+      key.roomId = room.id;
+      key.count = Math.min(p.count, Math.max(1, ClajConfig.maxStripes));
+      if (key.count > 1) {
+        key.key = room.stripeKey != 0 ? room.stripeKey : newStripeKey();
+        key.count = room.openStripes(key.count, key.key);
+      } else key.count = 1;
+      con.send(key);
+      Log.info("Connection @ (the host) opened @ stripes for the room @.", con.sid, key.count - 1, room.sid);
+    });
+    receiver.handle(RoomStripeJoinPacket.class, (c, p) -> {
+      ClajConnection con = toClajCon(c);
+      ClajRoom room = get(p.roomId);
+
+      if (con == null) return;
+      else if (find(c) != null) {
+        Log.warn("Connection @ tried to join the room @ as a stripe but is already in a room.", con.sid,
+                 Strings.longToBase64(p.roomId));
+        con.close(DcReason.error);
+        return;
+      } else if (room == null || !room.addStripe(con, p.index, p.key)) {
+        Log.warn("Connection @ tried to join the room @ as a stripe but was refused.", con.sid,
+                 Strings.longToBase64(p.roomId));
+        con.close(DcReason.error);
+        return;
+      }
+
+      conToRoom.put(con.id, room.id);
+      Log.info("Connection @ joined the room @ as stripe @.", con.sid, room.sid, p.index);
+      Events.fire(new RoomStripeJoinedEvent(con, room, p.index));
+    });
     receiver.handle(RoomClosureRequestPacket.class, (c, p) -> {
       ClajConnection con = toClajCon(c);
       ClajRoom room = find(c);
@@ -247,11 +305,12 @@ public class ClajRelay extends Server implements ApplicationListener {
       ClajConnection con = toClajCon(c);
       ClajRoom room = find(c);
       boolean isRequest = p instanceof RoomJoinRequestPacket;
+      int requestId = p instanceof RoomJoinRequestPacket r ? r.requestId : -1;
 
       // Disconnect from a potential another room.
       if (room != null) {
         // Ignore if it's the host of another room
-        if (room.isHost(con)) {
+        if (room.isUplink(con)) {
           room.message(MessageType.alreadyHosting);
           Log.warn("Connection @ tried to join the room @ but is already hosting the room @.", con.sid,
                    Strings.longToBase64(p.roomId), room.sid);
@@ -264,13 +323,13 @@ public class ClajRelay extends Server implements ApplicationListener {
       room = get(p.roomId);
 
       if (isClosed()) {
-        if (isRequest) rejectRoomJoin(con, room, p.roomId, RejectReason.serverClosing);
+        if (isRequest) rejectRoomJoin(con, room, p.roomId, RejectReason.serverClosing, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but the server is closed.", con.sid,
                  room == null ? Strings.longToBase64(p.roomId) : room.sid);
         return;
       } else if (room == null) {
-        if (isRequest) rejectRoomJoin(con, room, p.roomId, RejectReason.roomNotFound);
+        if (isRequest) rejectRoomJoin(con, room, p.roomId, RejectReason.roomNotFound, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but it doesn't exist.", con.sid,
                  Strings.longToBase64(p.roomId));
@@ -278,29 +337,29 @@ public class ClajRelay extends Server implements ApplicationListener {
       // Limit to avoid room searching
       } else if (ClajConfig.joinLimit > 0 && !con.joinRate.allow(60000L, ClajConfig.joinLimit)) { //TODO: not reliable
         // Act same way as not found
-        if (isRequest) rejectRoomJoin(con, room, RejectReason.roomNotFound);
+        if (isRequest) rejectRoomJoin(con, room, RejectReason.roomNotFound, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but was rate limited.", con.sid, room.sid);
         return;
       } else if (room.type != null && !room.type.equals(p.type) && !(p.type == null && ClajConfig.acceptNoType)) {
-        if (isRequest) rejectRoomJoin(con, room, RejectReason.incompatible);
+        if (isRequest) rejectRoomJoin(con, room, RejectReason.incompatible, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but has an incompatible type. (was: @, need: @)",
                  con.sid, room.sid, p.type, room.type);
         return;
       } else if (room.isProtected && !p.withPassword) {
-        if (isRequest) rejectRoomJoin(con, room, RejectReason.passwordRequired);
+        if (isRequest) rejectRoomJoin(con, room, RejectReason.passwordRequired, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but a password is needed.", con.sid, room.sid);
         return;
       } else if (room.isProtected && room.password != p.password) {
-        if (isRequest) rejectRoomJoin(con, room, RejectReason.invalidPassword);
+        if (isRequest) rejectRoomJoin(con, room, RejectReason.invalidPassword, requestId);
         else con.close(DcReason.error);
         Log.warn("Connection @ tried to join the room @ but used the wrong password.", con.sid, room.sid);
         return;
 
       } else if (isRequest) {
-        acceptJoinRequest(con, room);
+        acceptJoinRequest(con, room, requestId);
         Log.debug("Connection @ validated its join request to the room @.", con.sid, room.sid);
         Events.fire(new ConnectionPreJoinEvent(con, room));
         return;
@@ -334,16 +393,48 @@ public class ClajRelay extends Server implements ApplicationListener {
     });
     receiver.handle(RoomListRequestPacket.class, (c, p) -> {
       ClajConnection con = toClajCon(c);
-      ClajRoom room = find(c);
-      //TODO
+      if (con == null) return;
       //TODO: prepare packet in another thread or in multiple tasks?
       //      this can prevent some kind of attack by spamming this request.
+      RoomListPacket list = makeRoomList(p.type);
+      list.requestId = p.requestId;
+      sendRoomList(con, list);
+    });
+    receiver.handle(RoomListSubscribePacket.class, (c, p) -> {
+      ClajConnection con = toClajCon(c);
+      if (con == null) return;
+      // Connections in a room have nothing to do with the list
+      if (find(c) != null) {
+        sendRoomList(con, makeRoomList(p.type));
+        return;
+      }
+      subscriptions.subscribe(con, p.type);
+    });
+    receiver.handle(RoomListUnsubscribePacket.class, (c, p) -> {
+      ClajConnection con = toClajCon(c);
+      if (con != null) subscriptions.unsubscribe(con);
     });
     receiver.handle(RoomInfoRequestPacket.class, (c, p) -> {
       ClajConnection con = toClajCon(c);
-      ClajRoom room = find(c);
-      //TODO
-      // Async request, put request in a queue if state is too old
+      if (con == null) return;
+      ClajRoom room = get(p.roomId);
+      //TODO: async request, put request in a queue if state is too old
+      // Rooms without implementation type cannot be described
+      if (room == null || room.isClosed() || room.type == null) {
+        RoomInfoDeniedPacket denied = new RoomInfoDeniedPacket();
+        denied.requestId = p.requestId;
+        con.send(denied);
+        return;
+      }
+
+      RoomInfoPacket info = new RoomInfoPacket();
+      info.roomId = room.id;
+      info.isProtected = room.isProtected;
+      info.type = room.type;
+      // Duplicate to not consume the room state when writing
+      info.state = room.rawState != null ? room.rawState.duplicate() : ByteBuffer.allocate(0);
+      info.requestId = p.requestId;
+      sendRoomInfo(con, info);
     });
     receiver.handle(RoomStatePacket.class, (c, p) -> {
       ClajConnection con = toClajCon(c);
@@ -361,7 +452,8 @@ public class ClajRelay extends Server implements ApplicationListener {
       ClajRoom room = find(c);
       String tsid = AddressUtil.encodeId(p.conID);
 
-      if (checkRoomHost(con, room, MessageType.conClosureDenied,
+      if (!(room != null && con != null && room.isStripe(con)) &&
+          checkRoomHost(con, room, MessageType.conClosureDenied,
                         "Connection @ from room @ tried to close connection @ but is not the host.", tsid)) return;
       Connection target = Structs.find(getConnections(), cc -> cc.getID() == p.conID);
 
@@ -370,11 +462,15 @@ public class ClajRelay extends Server implements ApplicationListener {
         Log.warn("Connection @ from room @ tried to close a not found connection.", con.sid, room.sid);
         //TODO: an event for that?
         return ;
-      } else if (target == c || !room.contains(target)) {
+      } else if (target == c || room.isUplink(target) || !room.contains(target)) {
         Log.warn("Connection @ from room @ tried to close a connection from another room.", con.sid, room.sid);
         //TODO: warn the room?
         Events.fire(new ActionDeniedEvent(con, room, MessageType.conClosureDenied));
         return;
+      } else if (!room.isUplinkOf(c, p.conID)) {
+        Log.warn("Connection @ from room @ tried to close connection @ but doesn't carry it.", con.sid, room.sid, tsid);
+        Events.fire(new ActionDeniedEvent(con, room, MessageType.conClosureDenied));
+        return;
       }
 
       Log.info("Connection @ from room @ closed connection @.", con.sid, room.sid, tsid);
@@ -386,7 +482,7 @@ public class ClajRelay extends Server implements ApplicationListener {
     receiver.handle(ConnectionPacketWrapPacket.class, (c, p) -> {
       ClajRoom room = find(c);
       if (room == null) return;
-      if (room.isHost(c)) notifiedIdle.remove(p.conID); // not thread-safe but i don't care
+      if (room.isUplink(c)) notifiedIdle.remove(p.conID); // not thread-safe but i don't care
       room.received(c, p);
     });
     receiver.handle(RawPacket.class, (c, p) -> {
@@ -411,6 +507,11 @@ public class ClajRelay extends Server implements ApplicationListener {
     Events.on(ClajEvents.ServerLoadedEvent.class, e -> host(ClajVars.port));
   }
 
+  @Override
+  public void update() {
+    subscriptions.update();
+  }
+
   /** At this point it's too late to notify closure. */
   @Override
   public void dispose() {
@@ -487,6 +588,35 @@ public class ClajRelay extends Server implements ApplicationListener {
     return closed;
   }
 
+  /**
+   * Re-encodes the discovery response if the advertised load is outdated. <br>
+   * Called by the discovery handler, so no need of synchronization.
+   */
+  protected ByteBuffer serverInfo() {
+    long now = Time.millis();
+    if (infoUpdated == -1 || now - infoUpdated >= infoRefreshInterval) {
+      infoUpdated = now;
+      infoPacket.version = ClajVars.version.majorVersion;
+
+      if (ClajConfig.advertiseLoad) {
+        infoLoad.rooms = rooms.size; // Not thread-safe but shouldn't be a problem
+        infoLoad.connections = getConnections().length;
+        infoLoad.upload = networkSpeed == null ? 0 : networkSpeed.uploadSpeed();
+        infoLoad.download = networkSpeed == null ? 0 : networkSpeed.downloadSpeed();
+        infoLoad.admission = isClosed() ? AdmissionHint.closing :
+                             ClajConfig.busyThreshold > 0 && infoLoad.rooms >= ClajConfig.busyThreshold ?
+                             AdmissionHint.busy : AdmissionHint.accepting;
+        infoPacket.load = infoLoad;
+      } else infoPacket.load = null;
+
+      infoBuff.clear();
+      infoBuff.put(ClajNet.id);
+      infoPacket.write(infoOutput);
+      infoBuff.flip();
+    }
+    return (ByteBuffer)infoBuff.rewind();
+  }
+
   public void closeRooms() {
     try {
       for (ClajRoom r : rooms.values()) r.close(CloseReason.serverClosed);
@@ -520,23 +650,74 @@ public class ClajRelay extends Server implements ApplicationListener {
   }
 
   public void rejectRoomJoin(ClajConnection connection, ClajRoom room, RejectReason reason) {
-    rejectRoomJoin(connection, room, room.id, reason);
+    rejectRoomJoin(connection, room, reason, -1);
+  }
+  public void rejectRoomJoin(ClajConnection connection, ClajRoom room, RejectReason reason, int requestId) {
+    rejectRoomJoin(connection, room, room.id, reason, requestId);
   }
-  protected void rejectRoomJoin(ClajConnection connection, ClajRoom room, long roomId, RejectReason reason) {
+  protected void rejectRoomJoin(ClajConnection connection, ClajRoom room, long roomId, RejectReason reason,
+                                int requestId) {
     RoomJoinDeniedPacket p = new RoomJoinDeniedPacket();
     p.roomId = room == null ? roomId : room.id;
     p.reason = reason;
+    p.requestId = requestId;
     connection.send(p);
     Events.fire(new ConnectionJoinRejectedEvent(connection, room, reason));
     connection.close();
   }
 
   public void acceptJoinRequest(ClajConnection connection, ClajRoom room) {
+    acceptJoinRequest(connection, room, -1);
+  }
+  public void acceptJoinRequest(ClajConnection connection, ClajRoom room, int requestId) {
     RoomJoinAcceptedPacket p = new RoomJoinAcceptedPacket();
     p.roomId = room.id;
+    p.requestId = requestId;
     connection.send(p);
   }
 
+  /** @return the list of public rooms of the specified implementation type. */
+  public RoomListPacket makeRoomList(ClajType type) {
+    Seq<ClajRoom> list = new Seq<>();
+    for (ClajRoom room : rooms.values()) {
+      if (room.isListed(type)) list.add(room);
+    }
+    return fillRoomList(new RoomListPacket(), list);
+  }
+
+  public <T extends RoomListPacket> T fillRoomList(T packet, Seq<ClajRoom> list) {
+    packet.init(list.size);
+    for (int i=0; i<list.size; i++) {
+      ClajRoom room = list.get(i);
+      packet.rooms[i] = room.id;
+      packet.isProtected[i] = room.isProtected;
+      // Duplicate to not consume the room state when writing
+      packet.states[i] = room.rawState == null ? null : room.rawState.duplicate();
+    }
+    return packet;
+  }
+
+  /** Sends the list in chunks if it's too large to fit in a packet. */
+  public void sendRoomList(ClajConnection connection, RoomListPacket packet) {
+    if (packet.byteSize() < 8128) connection.send(packet);
+    else connection.sendStream(packet);
+  }
+
+  /** Sends the room info in chunks if its state is too large to fit in a packet. */
+  public void sendRoomInfo(ClajConnection connection, RoomInfoPacket packet) {
+    if (packet.byteSize() < 8128) connection.send(packet);
+    else connection.sendStream(packet);
+  }
+
+  /** Stripe keys must not be guessable, as they allow to receive the traffic of clients. */
+  public long newStripeKey() {
+    long key;
+    /* re-roll if 0 because it's used to specify no key. */
+    do { key = keyRandom.nextLong(); }
+    while (key == 0);
+    return key;
+  }
+
   public long newRoomId() {
     long id;
     /* re-roll if -1 because it's used to specify an uncreated room. */
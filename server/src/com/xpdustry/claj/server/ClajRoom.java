@@ -47,6 +47,15 @@ public class ClajRoom implements NetListener {
   public final ClajConnection host;
   /** Using IntMap instead of Seq for faster search. */
   public final IntMap<ClajConnection> clients = new IntMap<>();
+  /**
+   * Striped connections of the host, the index {@code 0} is always {@code null} as it's the host. <br>
+   * Each client is assigned to a stripe by its id when joining, or to the host if the stripe is not connected.
+   */
+  protected ClajConnection[] stripes = {};
+  /** Host connection carrying the traffic of each client, the host itself or a stripe. */
+  protected final IntMap<ClajConnection> uplinks = new IntMap<>();
+  /** Key given to the host to open stripes, {@code 0} if not requested. */
+  public long stripeKey;
   /** For debugging, to know how many packets were transferred from a client to a host, and vice versa. */
   public final NetworkSpeed transferredPackets = new NetworkSpeed(8);
 
@@ -78,17 +87,20 @@ public class ClajRoom implements NetListener {
     if (connection.getArbitraryData() instanceof ClajConnection con) connected(con);
   }
 
-  /** Alerts the host of the client arrival. */
+  /** Alerts the host of the client arrival, on the uplink assigned to the client. */
   public void connected(ClajConnection connection) {
     if (closed) return;
+    ClajConnection uplink = assignUplink(connection.id);
 
-    ConnectionJoinPacket p = new ConnectionJoinPacket();
+    ConnectionJoinPacket p = ConnectionJoinPacket.pool.obtain();
     p.conID = connection.id;
     p.roomId = id;
     p.addressHash = AddressUtil.hash(connection.connection);
-    host.send(p); // Assumes the host is still connected
+    uplink.send(p); // Assumes the uplink is still connected
+    ConnectionJoinPacket.pool.free(p);
 
     clients.put(connection.id, connection);
+    uplinks.put(connection.id, uplink);
   }
 
   /** Alerts the host that a client disconnected. This doesn't close the connection. */
@@ -105,14 +117,19 @@ public class ClajRoom implements NetListener {
       close();
       return;
 
-    } else if (host.isConnected()) {
-      ConnectionClosedPacket p = new ConnectionClosedPacket();
+    } else if (isStripe(connection)) {
+      removeStripe(connection);
+      return;
+    }
+
+    ClajConnection uplink = uplinks.remove(connection.getID());
+    if (clients.remove(connection.getID()) != null && uplink != null && uplink.isConnected()) {
+      ConnectionClosedPacket p = ConnectionClosedPacket.pool.obtain();
       p.conID = connection.getID();
       p.reason = reason;
-      host.send(p);
+      uplink.send(p);
+      ConnectionClosedPacket.pool.free(p);
     }
-
-    clients.remove(connection.getID());
   }
 
   /** Doesn't notify the room host about a disconnected client. */
@@ -125,7 +142,11 @@ public class ClajRoom implements NetListener {
     if (closed) return;
 
     if (isHost(connection)) close();
-    else clients.remove(connection.getID());
+    else if (isStripe(connection)) removeStripe(connection);
+    else {
+      clients.remove(connection.getID());
+      uplinks.remove(connection.getID());
+    }
   }
 
   /**
@@ -136,7 +157,7 @@ public class ClajRoom implements NetListener {
    */
   @Override
   public void received(Connection connection, Object object) {
-    if (isHost(connection)) {
+    if (isUplink(connection)) {
       if (object instanceof ConnectionPacketWrapPacket wrap)
         received(connection, wrap);
 
@@ -151,19 +172,22 @@ public class ClajRoom implements NetListener {
    * This will notify the host if the connection is not found.
    */
   public void received(Connection connection, ConnectionPacketWrapPacket wrap) {
-    if (closed || !isHost(connection)) return;
+    if (closed || !isUplink(connection)) return;
     ClajConnection con = clients.get(wrap.conID);
 
-    if (con != null && con.isConnected()) {
+    // Only the host connection carrying the client can send to it
+    if (con != null && con.isConnected() && isUplinkOf(connection, wrap.conID)) {
       con.send(wrap.raw, wrap.isTCP);
       transferredPackets.uploadMark();
 
     // Notify that this connection doesn't exist, this case normally never happen
-    } else if (host.isConnected()) {
-      ConnectionClosedPacket p = new ConnectionClosedPacket();
+    } else {
+      ClajConnection uplink = isHost(connection) ? host : stripeOf(connection);
+      ConnectionClosedPacket p = ConnectionClosedPacket.pool.obtain();
       p.conID = wrap.conID;
       p.reason = DcReason.error;
-      host.send(p);
+      uplink.send(p);
+      ConnectionClosedPacket.pool.free(p);
     }
   }
 
@@ -172,12 +196,14 @@ public class ClajRoom implements NetListener {
    * framework packets are ignored and mindustry packets are saved as raw buffer.
    */
   public void received(Connection connection, RawPacket raw) {
-    if (closed || !host.isConnected() || !clients.containsKey(connection.getID())) return;
+    ClajConnection uplink = uplinks.get(connection.getID());
+    if (closed || uplink == null || !uplink.isConnected()) return;
 
-    ConnectionPacketWrapPacket p = new ConnectionPacketWrapPacket();
+    ConnectionPacketWrapPacket p = ConnectionPacketWrapPacket.pool.obtain();
     p.conID = connection.getID();
     p.raw = raw;
-    host.send(p);
+    uplink.send(p);
+    ConnectionPacketWrapPacket.pool.free(p);
     transferredPackets.downloadMark();
   }
 
@@ -191,13 +217,15 @@ public class ClajRoom implements NetListener {
   public void idle(Connection connection) {
     if (closed) return;
 
-    if (isHost(connection)) {
-      // Ignore if this is the room host
+    ClajConnection uplink = uplinks.get(connection.getID());
+    if (isUplink(connection)) {
+      // Ignore if this is the room host or a stripe
 
-    } else if (host.isConnected() && clients.containsKey(connection.getID())) {
-      ConnectionIdlingPacket p = new ConnectionIdlingPacket();
+    } else if (uplink != null && uplink.isConnected()) {
+      ConnectionIdlingPacket p = ConnectionIdlingPacket.pool.obtain();
       p.conID = connection.getID();
-      host.send(p);
+      uplink.send(p);
+      ConnectionIdlingPacket.pool.free(p);
     }
   }
 
@@ -234,8 +262,79 @@ public class ClajRoom implements NetListener {
     host.send(p);
 
     host.close();
+    for (ClajConnection c : stripes) {
+      if (c != null) c.close();
+    }
     for (ClajConnection c : clients.values()) c.close();
     clients.clear();
+    uplinks.clear();
+  }
+
+  /**
+   * Allows the host to open {@code count} connections, including itself. <br>
+   * @return the number of connections granted.
+   */
+  public int openStripes(int count, long key) {
+    if (closed) return 1;
+    count = Math.max(1, count);
+    // Stripes cannot be removed once opened, as clients are assigned to them
+    if (count > stripes.length) {
+      ClajConnection[] next = new ClajConnection[count];
+      System.arraycopy(stripes, 0, next, 0, stripes.length);
+      stripes = next;
+    }
+    stripeKey = key;
+    return stripes.length;
+  }
+
+  /** @return whether the connection has been added as the stripe {@code index}. */
+  public boolean addStripe(ClajConnection connection, int index, long key) {
+    if (closed || stripeKey == 0 || key != stripeKey || index <= 0 || index >= stripes.length ||
+        stripes[index] != null) return false;
+    stripes[index] = connection;
+    RoomLinkPacket p = new RoomLinkPacket();
+    p.roomId = id;
+    connection.send(p);
+    return true;
+  }
+
+  /** Removes the stripe and closes the clients assigned to it, as the host cannot reach them anymore. */
+  protected void removeStripe(Connection connection) {
+    for (int i=1; i<stripes.length; i++) {
+      if (stripes[i] != null && stripes[i].connection == connection) stripes[i] = null;
+    }
+    for (IntMap.Entry<ClajConnection> e : uplinks) {
+      if (e.value.connection != connection) continue;
+      ClajConnection client = clients.get(e.key);
+      if (client != null) client.close();
+    }
+  }
+
+  /** @return the stripe of the client, or the host if not connected. */
+  protected ClajConnection assignUplink(int conId) {
+    if (stripes.length <= 1) return host;
+    ClajConnection stripe = stripes[Math.floorMod(conId, stripes.length)];
+    return stripe != null && stripe.isConnected() ? stripe : host;
+  }
+
+  /** @return the host connection carrying the traffic of the client, {@code null} if not in the room. */
+  public ClajConnection uplinkOf(int conId) {
+    return uplinks.get(conId);
+  }
+
+  /** @return whether specified host connection is the one carrying the traffic of the client. */
+  public boolean isUplinkOf(Connection connection, int conId) {
+    ClajConnection uplink = uplinks.get(conId);
+    return uplink != null && uplink.connection == connection;
+  }
+
+  /** @return the number of connected stripes, excluding the host. */
+  public int stripes() {
+    int count = 0;
+    for (ClajConnection c : stripes) {
+      if (c != null) count++;
+    }
+    return count;
   }
 
   /** Sends a message to the host and clients. */
@@ -283,6 +382,11 @@ public class ClajRoom implements NetListener {
     this.state = null; //TODO: add public decoder list
   }
 
+  /** @return whether the room is visible in the public list of the specified implementation type. */
+  public boolean isListed(ClajType type) {
+    return !closed && isPublic && (type == null || type.equals(this.type));
+  }
+
   /** @return whether specified connection is the room host or not. */
   public boolean isHost(Connection con) {
     return con == host.connection;
@@ -293,6 +397,34 @@ public class ClajRoom implements NetListener {
     return con == host;
   }
 
+  /** @return the stripe of the room host using this connection, or {@code null}. */
+  public ClajConnection stripeOf(Connection con) {
+    for (int i=1; i<stripes.length; i++) {
+      if (stripes[i] != null && stripes[i].connection == con) return stripes[i];
+    }
+    return null;
+  }
+
+  /** @return whether specified connection is a stripe of the room host. */
+  public boolean isStripe(Connection con) {
+    return stripeOf(con) != null;
+  }
+
+  /** @return whether specified connection is a stripe of the room host. */
+  public boolean isStripe(ClajConnection con) {
+    return isStripe(con.connection);
+  }
+
+  /** @return whether specified connection is the room host or one of his stripes. */
+  public boolean isUplink(Connection con) {
+    return isHost(con) || isStripe(con);
+  }
+
+  /** @return whether specified connection is the room host or one of his stripes. */
+  public boolean isUplink(ClajConnection con) {
+    return isUplink(con.connection);
+  }
+
   /** @return whether the connection is the room host or one of his client. */
   public boolean contains(ClajConnection con) {
     return contains(con.connection);
@@ -300,6 +432,6 @@ public class ClajRoom implements NetListener {
 
   /** @return whether the connection is the room host or one of his client. */
   public boolean contains(Connection con) {
-    return !closed && con != null && (isHost(con) || clients.containsKey(con.getID()));
+    return !closed && con != null && (isUplink(con) || clients.containsKey(con.getID()));
   }
 }
@@ -100,6 +100,7 @@ public class ClajServerSerializer implements NetSerializer, FrameworkSerializer
       Strings.writeUTF(writeo, str);
 
     } else if (object instanceof Packet packet) {
+      PacketPool.check(packet);
       if (!(object instanceof RawPacket))
         buffer.put(ClajNet.id).put(ClajNet.getId(packet));
       packet.write(writeo);
@@ -0,0 +1,138 @@
+/**
+ * This file is part of CLaJ. The system that allows you to play with your friends,
+ * just by creating a room, copying the link and sending it to your friends.
+ * Copyright (c) 2025-2026  Xpdustry
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.xpdustry.claj.server;
+
+import arc.Events;
+import arc.struct.IntMap;
+import arc.struct.LongMap;
+import arc.struct.LongSeq;
+import arc.struct.Seq;
+import arc.util.Log;
+import arc.util.Time;
+
+import com.xpdustry.claj.common.packets.RoomListPacket;
+import com.xpdustry.claj.common.packets.RoomListUpdatePacket;
+import com.xpdustry.claj.common.status.ClajType;
+import com.xpdustry.claj.server.ClajEvents.*;
+
+
+/**
+ * Keeps track of connections subscribed to the public room list. <br>
+ * Room changes are collected from {@link ClajEvents} and pushed to subscribers as {@link RoomListUpdatePacket},
+ * at most once every {@link ClajConfig#subscriptionInterval} per subscriber.
+ */
+public class ClajSubscriptions {
+  protected final ClajRelay relay;
+  /** Subscribers by connection id. */
+  public final IntMap<Subscriber> subscribers = new IntMap<>();
+
+  public ClajSubscriptions(ClajRelay relay) {
+    this.relay = relay;
+
+    Events.on(RoomCreatedEvent.class, e -> changed(e.room));
+    Events.on(RoomClosedEvent.class, e -> changed(e.room));
+    Events.on(ConfigurationChangedEvent.class, e -> changed(e.room));
+    Events.on(StateChangedEvent.class, e -> changed(e.room));
+    Events.on(ClientDisonnectedEvent.class, e -> {
+      if (e.connection != null) unsubscribe(e.connection);
+    });
+  }
+
+  /** Sends the current room list to the connection, and registers it for future changes. */
+  public void subscribe(ClajConnection connection, ClajType type) {
+    Subscriber sub = new Subscriber(connection, type);
+    Seq<ClajRoom> list = new Seq<>();
+
+    for (ClajRoom room : relay.rooms.values()) {
+      if (!room.isListed(type)) continue;
+      list.add(room);
+      sub.known.put(room.id, room);
+    }
+
+    sub.lastUpdate = Time.millis();
+    subscribers.put(connection.id, sub);
+    relay.sendRoomList(connection, relay.fillRoomList(new RoomListPacket(), list));
+    Log.debug("Connection @ subscribed to the room list.", connection.sid);
+  }
+
+  public void unsubscribe(ClajConnection connection) {
+    if (subscribers.remove(connection.id) != null)
+      Log.debug("Connection @ unsubscribed from the room list.", connection.sid);
+  }
+
+  public boolean isSubscribed(ClajConnection connection) {
+    return subscribers.containsKey(connection.id);
+  }
+
+  /** Marks the room as changed for all subscribers that can see it. */
+  public void changed(ClajRoom room) {
+    if (subscribers.isEmpty()) return;
+    for (Subscriber sub : subscribers.values()) {
+      if (sub.type == null || sub.type.equals(room.type)) sub.changed.put(room.id, room);
+    }
+  }
+
+  /** Pushes pending changes to subscribers that are not rate limited. Must be called in the main thread. */
+  public void update() {
+    if (subscribers.isEmpty()) return;
+    long now = Time.millis();
+    for (Subscriber sub : subscribers.values()) {
+      if (sub.changed.isEmpty() || now - sub.lastUpdate < ClajConfig.subscriptionInterval) continue;
+      push(sub);
+      sub.lastUpdate = now;
+    }
+  }
+
+  protected void push(Subscriber sub) {
+    Seq<ClajRoom> updated = new Seq<>();
+    LongSeq removed = new LongSeq();
+
+    for (LongMap.Entry<ClajRoom> e : sub.changed) {
+      if (e.value.isListed(sub.type)) {
+        updated.add(e.value);
+        sub.known.put(e.key, e.value);
+      } else if (sub.known.remove(e.key) != null) removed.add(e.key);
+    }
+    sub.changed.clear();
+    if (updated.isEmpty() && removed.isEmpty()) return;
+
+    RoomListUpdatePacket p = relay.fillRoomList(new RoomListUpdatePacket(), updated);
+    p.removed = removed.toArray();
+    relay.sendRoomList(sub.connection, p);
+  }
+
+
+  public static class Subscriber {
+    public final ClajConnection connection;
+    /** Implementation type of listed rooms. */
+    public final ClajType type;
+    /** Rooms already notified to the subscriber. */
+    protected final LongMap<ClajRoom> known = new LongMap<>();
+    /** Rooms changed since the last update. */
+    protected final LongMap<ClajRoom> changed = new LongMap<>();
+    /** Time of the last update, used for rate limiting. */
+    protected long lastUpdate;
+
+    public Subscriber(ClajConnection connection, ClajType type) {
+      this.connection = connection;
+      this.type = type;
+    }
+  }
+}